@@ -0,0 +1,73 @@
+package ru.practicum.shareit.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.shareit.booking.archive.BookingArchiver;
+import ru.practicum.shareit.booking.dto.BookingResponseDto;
+import ru.practicum.shareit.booking.model.State;
+import ru.practicum.shareit.booking.service.BookingService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Первая страница списков бронирований при растущей истории, с архивом и без. Без архива CURRENT просматривает
+// по индексу всю историю пользователя, с архивом CURRENT и FUTURE должны держаться на уровне historyPerItem = 0,
+// а PAST платит за второй запрос к архиву. Запуск: -Djmh.args="BookingArchive"
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BookingArchiveJmh {
+    private static final int PAGE = 20;
+    // Недавние и будущие брони, их число от истории не зависит
+    private static final int RECENT_PER_ITEM = 100;
+
+    @Param({"0", "10000", "100000"})
+    private int historyPerItem;
+
+    @Param({"false", "true"})
+    private boolean archived;
+
+    @Param({"CURRENT", "FUTURE", "PAST"})
+    private State state;
+
+    private ShareItDataset dataset;
+    private BookingService bookingService;
+
+    @Setup
+    public void setUp() {
+        dataset = new ShareItDataset(RECENT_PER_ITEM);
+        dataset.addHistory(historyPerItem);
+        bookingService = dataset.context.getBean(BookingService.class);
+
+        if (archived) {
+            dataset.context.getBean(BookingArchiver.class).archive();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataset.close();
+    }
+
+    @Benchmark
+    public List<BookingResponseDto> bookerBookings() {
+        return bookingService.getBookingByBooker(dataset.bookerId, state, null, 0, PAGE);
+    }
+
+    @Benchmark
+    public List<BookingResponseDto> ownerBookings() {
+        return bookingService.getBookingItemsByOwner(dataset.ownerId, state, null, 0, PAGE);
+    }
+}
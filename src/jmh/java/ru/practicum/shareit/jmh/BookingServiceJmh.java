@@ -0,0 +1,61 @@
+package ru.practicum.shareit.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.shareit.booking.dto.BookingResponseDto;
+import ru.practicum.shareit.booking.model.State;
+import ru.practicum.shareit.booking.service.BookingService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Первая страница списков бронирований автора и владельца для каждого State.
+// Фильтр по State выполняется в запросе, поэтому меряется весь путь сервиса вместе с базой
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BookingServiceJmh {
+    private static final int PAGE = 20;
+
+    @Param({"10", "1000", "100000"})
+    private int bookingsPerItem;
+
+    @Param({"ALL", "CURRENT", "PAST", "FUTURE", "WAITING", "REJECTED"})
+    private State state;
+
+    private ShareItDataset dataset;
+    private BookingService bookingService;
+
+    @Setup
+    public void setUp() {
+        dataset = new ShareItDataset(bookingsPerItem);
+        bookingService = dataset.context.getBean(BookingService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataset.close();
+    }
+
+    @Benchmark
+    public List<BookingResponseDto> bookerBookings() {
+        return bookingService.getBookingByBooker(dataset.bookerId, state, null, 0, PAGE);
+    }
+
+    @Benchmark
+    public List<BookingResponseDto> ownerBookings() {
+        return bookingService.getBookingItemsByOwner(dataset.ownerId, state, null, 0, PAGE);
+    }
+}
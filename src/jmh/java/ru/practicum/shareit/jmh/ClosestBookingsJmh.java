@@ -0,0 +1,99 @@
+package ru.practicum.shareit.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.shareit.booking.dto.BookingMapper;
+import ru.practicum.shareit.booking.dto.BookingShortResponseDto;
+import ru.practicum.shareit.booking.dto.ClosestBookingView;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Разбор ответа findClosestBookings в пары [последняя, следующая] по вещам, как в ItemServiceImpl.getItems.
+// Запрос отдает не больше двух строк на вещь, поэтому размер входа задается числом вещей, а не броней
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ClosestBookingsJmh {
+    @Param({"10", "1000", "100000"})
+    private int items;
+
+    private List<ClosestBookingView> rows;
+
+    @Setup
+    public void setUp() {
+        rows = new ArrayList<>(items * 2);
+        final LocalDateTime now = LocalDateTime.now();
+        long bookingId = 1;
+
+        for (long itemId = 1; itemId <= items; itemId++) {
+            rows.add(new Row(itemId, bookingId++, 2L, now.minusDays(1), false));
+
+            // У каждой третьей вещи нет следующей брони
+            if (itemId % 3 != 0) {
+                rows.add(new Row(itemId, bookingId++, 2L, now.plusDays(1), true));
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<Long, List<BookingShortResponseDto>> groupByItem() {
+        return BookingMapper.toClosestBookingsByItem(rows);
+    }
+
+    private static final class Row implements ClosestBookingView {
+        private final Long itemId;
+        private final Long id;
+        private final Long bookerId;
+        private final LocalDateTime start;
+        private final Boolean upcoming;
+
+        private Row(Long itemId, Long id, Long bookerId, LocalDateTime start, Boolean upcoming) {
+            this.itemId = itemId;
+            this.id = id;
+            this.bookerId = bookerId;
+            this.start = start;
+            this.upcoming = upcoming;
+        }
+
+        @Override
+        public Long getItemId() {
+            return itemId;
+        }
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public Long getBookerId() {
+            return bookerId;
+        }
+
+        @Override
+        public LocalDateTime getStart() {
+            return start;
+        }
+
+        @Override
+        public Boolean getUpcoming() {
+            return upcoming;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ru.practicum.shareit.jmh;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.item.dto.item.ItemResponseDto;
+import ru.practicum.shareit.item.service.ItemService;
+import ru.practicum.shareit.item.service.ItemSummaryReconciler;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Карточка вещи (GET /items/{id}: ETag, затем тело) с теплым кэшем второго уровня и с пустым. Карточки смотрит
+// не владелец, запросы идут по небольшому горячему подмножеству вещей, как у популярных карточек в каталоге.
+// Число SQL-запросов на вызов и доля попаданий в кэш печатаются в конце. Запуск: -Djmh.args="ItemCache"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ItemCacheJmh {
+    private static final int BATCH = 10_000;
+    private static final int COMMENTS_PER_ITEM = 5;
+    private static final int HOT_ITEMS = 1_000;
+
+    @Param({"10000"})
+    private int items;
+
+    @Param({"false", "true"})
+    private boolean warm;
+
+    private ShareItDataset dataset;
+    private ItemService itemService;
+    private EntityManagerFactory entityManagerFactory;
+    private Statistics statistics;
+    private final List<Long> hotItemIds = new ArrayList<>();
+    private final Random random = new Random(42);
+    private long calls;
+
+    @Setup
+    public void setUp() {
+        dataset = new ShareItDataset(0);
+        itemService = dataset.context.getBean(ItemService.class);
+        entityManagerFactory = dataset.context.getBean(EntityManagerFactory.class);
+        seed(dataset.context.getBean(JdbcTemplate.class));
+        // Сводки с версиями для ETag у вещей, вставленных в обход сервиса
+        dataset.context.getBean(ItemSummaryReconciler.class).backfill();
+
+        entityManagerFactory.getCache().evictAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        long hits = statistics.getSecondLevelCacheHitCount();
+        long misses = statistics.getSecondLevelCacheMissCount();
+        System.out.printf("%nкэш %s: %.2f запросов на вызов, попаданий %.1f%%%n", warm ? "теплый" : "пустой",
+                (double) statistics.getPrepareStatementCount() / calls,
+                hits + misses == 0 ? 0 : 100.0 * hits / (hits + misses));
+
+        dataset.close();
+    }
+
+    @Benchmark
+    public ItemResponseDto itemCard() {
+        if (!warm) {
+            entityManagerFactory.getCache().evictAll();
+        }
+
+        long itemId = hotItemIds.get(random.nextInt(hotItemIds.size()));
+        calls++;
+        itemService.getItemETag(itemId, dataset.bookerId);
+        return itemService.getItemById(itemId, dataset.bookerId);
+    }
+
+    // Вещи владельца и комментарии к горячим вещям JDBC-батчами, id вещей из той же последовательности
+    private void seed(JdbcTemplate jdbcTemplate) {
+        for (int from = 0; from < items; from += BATCH) {
+            List<Object[]> rows = new ArrayList<>(BATCH);
+
+            for (int i = from; i < Math.min(from + BATCH, items); i++) {
+                rows.add(new Object[]{"Дрель " + i, "Простая дрель", true, dataset.ownerId});
+            }
+
+            jdbcTemplate.batchUpdate("INSERT INTO ITEMS (ID, NAME, DESCRIPTION, AVAILABLE, OWNER) " +
+                    "VALUES (NEXT VALUE FOR ITEMS_SEQ, ?, ?, ?, ?)", rows);
+        }
+
+        hotItemIds.addAll(jdbcTemplate.queryForList("SELECT ID FROM ITEMS WHERE OWNER = ? ORDER BY ID LIMIT ?",
+                Long.class, dataset.ownerId, HOT_ITEMS));
+
+        List<Object[]> authors = new ArrayList<>();
+        for (int i = 0; i < COMMENTS_PER_ITEM; i++) {
+            authors.add(new Object[]{"author " + i, "cache-author-" + i + "@shareit.ru"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO USERS (NAME, EMAIL) VALUES (?, ?)", authors);
+        List<Long> authorIds = jdbcTemplate.queryForList("SELECT ID FROM USERS WHERE EMAIL LIKE 'cache-author-%'",
+                Long.class);
+
+        List<Object[]> comments = new ArrayList<>();
+        for (long itemId : hotItemIds) {
+            for (long authorId : authorIds) {
+                comments.add(new Object[]{"Отличная вещь", itemId, authorId});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO COMMENTS (COMMENT, ITEM_ID, USER_ID, CREATED) " +
+                "VALUES (?, ?, ?, CURRENT_TIMESTAMP)", comments);
+    }
+}
@@ -0,0 +1,115 @@
+package ru.practicum.shareit.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.common.OffsetPageRequest;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.search.ItemSearchDocument;
+import ru.practicum.shareit.item.search.ItemSearchIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Первая страница /items/search: инвертированный индекс ItemSearchIndex против LIKE-запроса репозитория.
+// Запросы от очень избирательного до очень широкого. Время построения индекса печатается при подготовке.
+// Запуск: -Djmh.args="ItemSearch -p items=1000000"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ItemSearchJmh {
+    private static final int BATCH = 10_000;
+    private static final int PAGE = 20;
+    // Совпадение с LIKE проверяется для запросов, которые находят не больше стольких вещей
+    private static final int CHECK_LIMIT = 10_000;
+
+    private static final String[] NAMES = {"Дрель", "Перфоратор", "Шуруповерт", "Лобзик", "Болгарка",
+        "Палатка", "Велосипед", "Самокат", "Стремянка", "Пылесос"};
+    private static final String[] WORDS = {"простая", "мощная", "аккумуляторная", "ручная", "складная",
+        "новая", "легкая", "профессиональная", "компактная", "надежная", "детская", "туристическая"};
+
+    @Param({"100000", "1000000"})
+    private int items;
+
+    @Param({"Перфоратор 123457", "палатка 77", "аккумулятор", "дрель", "ль"})
+    private String query;
+
+    private ShareItDataset dataset;
+    private ItemRepository repository;
+    private ItemSearchIndex searchIndex;
+
+    @Setup
+    public void setUp() {
+        dataset = new ShareItDataset(0);
+        repository = dataset.context.getBean(ItemRepository.class);
+        searchIndex = dataset.context.getBean(ItemSearchIndex.class);
+        seed(dataset.context.getBean(JdbcTemplate.class));
+
+        long started = System.nanoTime();
+        searchIndex.rebuild();
+        System.out.printf("%nПостроение индекса на %d вещах: %d мс%n", items, (System.nanoTime() - started) / 1_000_000);
+
+        // Индекс должен находить ровно то же, что и LIKE
+        List<Item> matches = repository.getItemsSearch(query, OffsetPageRequest.of(0, CHECK_LIMIT + 1));
+        if (matches.size() <= CHECK_LIMIT) {
+            Set<Long> expected = matches.stream().map(Item::getId).collect(Collectors.toSet());
+            Set<Long> actual = searchIndex.search(query, 0, CHECK_LIMIT + 1).stream()
+                    .map(ItemSearchDocument::getId).collect(Collectors.toSet());
+
+            if (!expected.equals(actual)) {
+                throw new IllegalStateException("Индекс и LIKE нашли разные вещи по запросу " + query);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataset.close();
+    }
+
+    @Benchmark
+    public List<Item> like() {
+        return repository.getItemsSearch(query, OffsetPageRequest.of(0, PAGE));
+    }
+
+    @Benchmark
+    public List<ItemSearchDocument> index() {
+        return searchIndex.search(query, 0, PAGE);
+    }
+
+    // Вещи вставляются JDBC-батчами в обход Hibernate, id берутся из той же последовательности
+    private void seed(JdbcTemplate jdbcTemplate) {
+        Random random = new Random(42);
+
+        for (int from = 0; from < items; from += BATCH) {
+            List<Object[]> rows = new ArrayList<>(BATCH);
+
+            for (int i = from; i < Math.min(from + BATCH, items); i++) {
+                String description = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                        + " " + NAMES[random.nextInt(NAMES.length)].toLowerCase();
+                rows.add(new Object[]{NAMES[i % NAMES.length] + " " + i, description, i % 5 != 0, dataset.ownerId});
+            }
+
+            jdbcTemplate.batchUpdate("INSERT INTO ITEMS (ID, NAME, DESCRIPTION, AVAILABLE, OWNER) " +
+                    "VALUES (NEXT VALUE FOR ITEMS_SEQ, ?, ?, ?, ?)", rows);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package ru.practicum.shareit.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.shareit.item.dto.item.ItemResponseDto;
+import ru.practicum.shareit.item.service.ItemService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Вещи владельца с последней и следующей бронью: время не должно расти вместе с историей бронирований
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ItemServiceJmh {
+    private static final int PAGE = 20;
+
+    @Param({"10", "1000", "100000"})
+    private int bookingsPerItem;
+
+    private ShareItDataset dataset;
+    private ItemService itemService;
+
+    @Setup
+    public void setUp() {
+        dataset = new ShareItDataset(bookingsPerItem);
+        itemService = dataset.context.getBean(ItemService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataset.close();
+    }
+
+    @Benchmark
+    public List<ItemResponseDto> ownerItems() {
+        return itemService.getItems(dataset.ownerId, 0, PAGE);
+    }
+
+    @Benchmark
+    public ItemResponseDto itemByIdForOwner() {
+        return itemService.getItemById(dataset.itemIds.get(0), dataset.ownerId);
+    }
+}
@@ -0,0 +1,91 @@
+package ru.practicum.shareit.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.shareit.booking.dto.BookingMapper;
+import ru.practicum.shareit.booking.dto.BookingResponseDto;
+import ru.practicum.shareit.booking.dto.BookingShortResponseDto;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.item.dto.comment.CommentMapper;
+import ru.practicum.shareit.item.dto.comment.CommentResponseDto;
+import ru.practicum.shareit.item.dto.item.ItemMapper;
+import ru.practicum.shareit.item.dto.item.ItemResponseDto;
+import ru.practicum.shareit.item.model.Comment;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Преобразования сущностей в ответы: время и аллокации на одно преобразование
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MapperJmh {
+    private static final int COMMENTS = 10;
+
+    private Item item;
+    private Booking booking;
+    private Comment comment;
+    private BookingShortResponseDto last;
+    private BookingShortResponseDto next;
+    private List<CommentResponseDto> comments;
+
+    @Setup
+    public void setUp() {
+        User owner = User.builder().id(1L).name("owner").email("owner@shareit.ru").build();
+        User booker = User.builder().id(2L).name("booker").email("booker@shareit.ru").build();
+        LocalDateTime now = LocalDateTime.now();
+
+        item = Item.builder().id(1L).name("Дрель").description("Простая дрель").available(true).owner(owner).build();
+        booking = Booking.builder().id(1L).item(item).booker(booker).status(Status.APPROVED)
+                .start(now.minusDays(2)).end(now.minusDays(1)).build();
+        comment = Comment.builder().id(1L).text("Отличная дрель").item(item).user(booker).created(now).build();
+
+        last = BookingMapper.toShortBooking(booking);
+        next = BookingShortResponseDto.builder().id(2L).bookerId(2L).build();
+        comments = new ArrayList<>();
+        for (int i = 0; i < COMMENTS; i++) {
+            comments.add(CommentMapper.toCommentDto(comment));
+        }
+    }
+
+    @Benchmark
+    public ItemResponseDto itemToResponseDto() {
+        return ItemMapper.toItemResponseDto(item, last, next, comments);
+    }
+
+    @Benchmark
+    public ItemResponseDto itemToDto() {
+        return ItemMapper.toItemDto(item);
+    }
+
+    @Benchmark
+    public BookingResponseDto bookingToResponseDto() {
+        return BookingMapper.toBookingResponseDto(booking);
+    }
+
+    @Benchmark
+    public BookingShortResponseDto bookingToShortDto() {
+        return BookingMapper.toShortBooking(booking);
+    }
+
+    @Benchmark
+    public CommentResponseDto commentToDto() {
+        return CommentMapper.toCommentDto(comment);
+    }
+}
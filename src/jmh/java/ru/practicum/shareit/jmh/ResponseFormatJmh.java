@@ -0,0 +1,163 @@
+package ru.practicum.shareit.jmh;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.practicum.shareit.booking.dto.BookingMapper;
+import ru.practicum.shareit.booking.dto.BookingResponseDto;
+import ru.practicum.shareit.booking.dto.BookingShortResponseDto;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.common.NdjsonHttpMessageConverter;
+import ru.practicum.shareit.item.dto.comment.CommentResponseDto;
+import ru.practicum.shareit.item.dto.item.ItemResponseDto;
+import ru.practicum.shareit.item.dto.item.ItemShortResponseDto;
+import ru.practicum.shareit.user.dto.UserDto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Сериализация списков бронирований и вещей в каждом формате ответа: время на список, а размер тела
+// печатается при подготовке. Мапперы собраны так же, как в ResponseFormatConfig. Запуск: -Djmh.args="ResponseFormat"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ResponseFormatJmh {
+    // Бронирования одной страницы ходят по небольшому кругу авторов и вещей
+    private static final int USERS = 10;
+    private static final int ITEMS = 5;
+    private static final int COMMENTS_PER_ITEM = 5;
+
+    @Param({"20", "1000"})
+    private int size;
+
+    private ObjectMapper json;
+    private ObjectMapper smile;
+    private NdjsonHttpMessageConverter ndjson;
+    private List<BookingResponseDto> bookings;
+    private List<ItemResponseDto> items;
+
+    @Setup
+    public void setUp() throws IOException {
+        json = Jackson2ObjectMapperBuilder.json().build();
+        smile = Jackson2ObjectMapperBuilder.json().factory(SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES).build()).build();
+        ndjson = new NdjsonHttpMessageConverter(json);
+
+        LocalDateTime now = LocalDateTime.now();
+        bookings = new ArrayList<>(size);
+        items = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            long userId = i % USERS + 1;
+            long itemId = i % ITEMS + 1;
+            bookings.add(BookingResponseDto.builder().id(i + 1).status(Status.APPROVED)
+                    .start(now.plusHours(i)).end(now.plusHours(i + 1))
+                    .booker(UserDto.builder().id(userId).name("user " + userId)
+                            .email("user" + userId + "@shareit.ru").build())
+                    .item(new ItemShortResponseDto(itemId, "Дрель " + itemId, "Простая дрель", true))
+                    .build());
+
+            List<CommentResponseDto> comments = new ArrayList<>(COMMENTS_PER_ITEM);
+            for (int j = 0; j < COMMENTS_PER_ITEM; j++) {
+                comments.add(CommentResponseDto.builder().id((long) i * COMMENTS_PER_ITEM + j)
+                        .text("Отличная дрель").authorName("user " + (j % USERS + 1)).created(now).build());
+            }
+            items.add(ItemResponseDto.builder().id((long) i + 1).name("Дрель " + i).description("Простая дрель")
+                    .available(true).comments(comments)
+                    .lastBooking(BookingShortResponseDto.builder().id((long) i).bookerId(userId).build())
+                    .nextBooking(BookingShortResponseDto.builder().id((long) i + 1).bookerId(userId).build())
+                    .build());
+        }
+
+        System.out.printf("%n%-28s %10s%n", "формат, " + size + " строк", "байт");
+        System.out.printf("%-28s %10d%n", "брони JSON", bookingsJson().length);
+        System.out.printf("%-28s %10d%n", "брони NDJSON", bookingsNdjson().length);
+        System.out.printf("%-28s %10d%n", "брони Smile", bookingsSmile().length);
+        System.out.printf("%-28s %10d%n", "брони JSON normalized", bookingsNormalizedJson().length);
+        System.out.printf("%-28s %10d%n", "брони Smile normalized", bookingsNormalizedSmile().length);
+        System.out.printf("%-28s %10d%n", "вещи JSON", itemsJson().length);
+        System.out.printf("%-28s %10d%n", "вещи NDJSON", itemsNdjson().length);
+        System.out.printf("%-28s %10d%n", "вещи Smile", itemsSmile().length);
+    }
+
+    @Benchmark
+    public byte[] bookingsJson() throws IOException {
+        return json.writeValueAsBytes(bookings);
+    }
+
+    @Benchmark
+    public byte[] bookingsNdjson() throws IOException {
+        return writeNdjson(bookings);
+    }
+
+    @Benchmark
+    public byte[] bookingsSmile() throws IOException {
+        return smile.writeValueAsBytes(bookings);
+    }
+
+    // Нормализация входит в замер: ее стоимость платит сервер
+    @Benchmark
+    public byte[] bookingsNormalizedJson() throws IOException {
+        return json.writeValueAsBytes(BookingMapper.toBookingListDto(bookings));
+    }
+
+    @Benchmark
+    public byte[] bookingsNormalizedSmile() throws IOException {
+        return smile.writeValueAsBytes(BookingMapper.toBookingListDto(bookings));
+    }
+
+    @Benchmark
+    public byte[] itemsJson() throws IOException {
+        return json.writeValueAsBytes(items);
+    }
+
+    @Benchmark
+    public byte[] itemsNdjson() throws IOException {
+        return writeNdjson(items);
+    }
+
+    @Benchmark
+    public byte[] itemsSmile() throws IOException {
+        return smile.writeValueAsBytes(items);
+    }
+
+    private byte[] writeNdjson(List<?> list) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ndjson.write(list, List.class, NdjsonHttpMessageConverter.NDJSON, new HttpOutputMessage() {
+            private final HttpHeaders headers = new HttpHeaders();
+
+            @Override
+            public OutputStream getBody() {
+                return out;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        });
+        return out.toByteArray();
+    }
+}
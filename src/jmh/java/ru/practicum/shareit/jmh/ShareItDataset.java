@@ -0,0 +1,96 @@
+package ru.practicum.shareit.jmh;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.ShareItApp;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Контекст приложения на H2 с синтетическими данными: владелец, ITEMS его вещей и у каждой
+// bookingsPerItem броней одного пользователя, разбросанных по часу вокруг текущего момента
+final class ShareItDataset {
+    static final int ITEMS = 5;
+    private static final int BATCH = 5000;
+    private static final Status[] STATUSES = {Status.APPROVED, Status.WAITING, Status.APPROVED, Status.REJECTED};
+
+    final ConfigurableApplicationContext context;
+    final long ownerId;
+    final long bookerId;
+    final List<Long> itemIds = new ArrayList<>();
+
+    ShareItDataset(int bookingsPerItem) {
+        context = new SpringApplicationBuilder(ShareItApp.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .properties("logging.level.root=WARN",
+                        "logging.level.org.springframework.transaction.interceptor=WARN",
+                        "logging.level.org.springframework.orm.jpa.JpaTransactionManager=WARN")
+                .run();
+
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        ItemRepository itemRepository = context.getBean(ItemRepository.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        User owner = userRepository.save(User.builder().name("owner").email("owner@shareit.ru").build());
+        User booker = userRepository.save(User.builder().name("booker").email("booker@shareit.ru").build());
+        ownerId = owner.getId();
+        bookerId = booker.getId();
+
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int i = 0; i < ITEMS; i++) {
+            Item item = itemRepository.save(Item.builder().name("Дрель " + i).description("Простая дрель")
+                    .available(true).owner(owner).build());
+            itemIds.add(item.getId());
+
+            List<Object[]> rows = new ArrayList<>(BATCH);
+            for (int j = 0; j < bookingsPerItem; j++) {
+                // Половина броней в прошлом, половина в будущем, каждая длится полтора часа
+                LocalDateTime start = now.plusHours(j - bookingsPerItem / 2);
+                rows.add(new Object[]{Timestamp.valueOf(start), Timestamp.valueOf(start.plusMinutes(90)),
+                    item.getId(), bookerId, STATUSES[j % STATUSES.length].name()});
+
+                if (rows.size() == BATCH || j == bookingsPerItem - 1) {
+                    jdbcTemplate.batchUpdate("INSERT INTO BOOKINGS (START_TIME, END_TIME, ITEM_ID, BOOKER_ID, STATUS) " +
+                            "VALUES (?, ?, ?, ?, ?)", rows);
+                    rows.clear();
+                }
+            }
+        }
+    }
+
+    // История: у каждой вещи historyPerItem броней того же пользователя, закончившихся больше года назад
+    void addHistory(int historyPerItem) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        LocalDateTime longAgo = LocalDateTime.now().minusYears(1);
+        List<Object[]> rows = new ArrayList<>(BATCH);
+
+        for (long itemId : itemIds) {
+            for (int j = 0; j < historyPerItem; j++) {
+                LocalDateTime start = longAgo.minusHours(2L * j + 2);
+                rows.add(new Object[]{Timestamp.valueOf(start), Timestamp.valueOf(start.plusMinutes(90)),
+                    itemId, bookerId, STATUSES[j % STATUSES.length].name()});
+
+                if (rows.size() == BATCH || j == historyPerItem - 1) {
+                    jdbcTemplate.batchUpdate("INSERT INTO BOOKINGS (START_TIME, END_TIME, ITEM_ID, BOOKER_ID, STATUS) " +
+                            "VALUES (?, ?, ?, ?, ?)", rows);
+                    rows.clear();
+                }
+            }
+        }
+    }
+
+    void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,88 @@
+package ru.practicum.shareit.load;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/*
+ * Генератор нагрузочного набора данных. Пишет прямо в таблицы schema.sql запросами INSERT ... SELECT
+ * по SYSTEM_RANGE, поэтому строки создаются внутри H2 без передачи через JDBC по одной.
+ * Данные детерминированы: одинаковые объемы дают одинаковый набор, прогоны можно сравнивать.
+ */
+final class DatasetGenerator {
+    // Порция одного INSERT ... SELECT, чтобы H2 не держал в памяти отмену для миллионов строк сразу
+    private static final long CHUNK = 500_000;
+    private static final long HOURS_IN_YEAR = 24 * 365;
+
+    static final String[] WORDS = {"дрель", "отвертка", "пила", "лестница", "палатка", "велосипед", "самокат",
+        "фотоаппарат", "проектор", "гитара", "шуруповерт", "перфоратор", "сноуборд", "коньки", "байдарка"};
+
+    private final Connection connection;
+
+    DatasetGenerator(Connection connection) {
+        this.connection = connection;
+    }
+
+    void generate(long users, long items, long bookings, long comments) throws SQLException {
+        insert("INSERT INTO USERS (ID, NAME, EMAIL) " +
+                "SELECT X, 'user' || X, 'user' || X || '@load.shareit.ru' FROM SYSTEM_RANGE(?, ?)", users);
+
+        // Владелец вещи X - пользователь X mod users + 1, название и описание собираются из словаря
+        insert("INSERT INTO ITEMS (ID, NAME, DESCRIPTION, AVAILABLE, OWNER) " +
+                "SELECT X, " + word("X") + " || ' ' || X, " +
+                "'Почти новая ' || " + word("X * 7 + 3") + " || ' и ' || " + word("X * 13 + 5") + ", " +
+                "MOD(X, 10) <> 0, MOD(X, " + users + ") + 1 " +
+                "FROM SYSTEM_RANGE(?, ?)", items);
+
+        // Брони равномерно по году вокруг текущего момента, длительностью от 1 до 72 часов
+        insert("INSERT INTO BOOKINGS (ID, START_TIME, END_TIME, ITEM_ID, BOOKER_ID, STATUS) " +
+                "SELECT X, " +
+                "DATEADD('HOUR', MOD(X * 7919, " + HOURS_IN_YEAR + ") - " + HOURS_IN_YEAR / 2 + ", LOCALTIMESTAMP(0)), " +
+                "DATEADD('HOUR', MOD(X * 7919, " + HOURS_IN_YEAR + ") - " + HOURS_IN_YEAR / 2 + " + MOD(X, 72) + 1, " +
+                "LOCALTIMESTAMP(0)), " +
+                "MOD(X * 31, " + items + ") + 1, MOD(X * 17, " + users + ") + 1, " +
+                "CASE MOD(X, 4) WHEN 0 THEN 'WAITING' WHEN 1 THEN 'REJECTED' ELSE 'APPROVED' END " +
+                "FROM SYSTEM_RANGE(?, ?)", bookings);
+
+        insert("INSERT INTO COMMENTS (ID, COMMENT, ITEM_ID, USER_ID, CREATED) " +
+                "SELECT X, 'Отзыв ' || X, MOD(X * 31, " + items + ") + 1, MOD(X * 17, " + users + ") + 1, " +
+                "DATEADD('MINUTE', -X, LOCALTIMESTAMP(0)) " +
+                "FROM SYSTEM_RANGE(?, ?)", comments);
+
+        // Id вставлены явно, сдвигаем генераторы, чтобы приложение не выдало уже занятые
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH " + (users + 1));
+            statement.execute("ALTER TABLE BOOKINGS ALTER COLUMN ID RESTART WITH " + (bookings + 1));
+            statement.execute("ALTER TABLE COMMENTS ALTER COLUMN ID RESTART WITH " + (comments + 1));
+            // Hibernate берет из ITEMS_SEQ верхнюю границу пачки из 50 id
+            statement.execute("ALTER SEQUENCE ITEMS_SEQ RESTART WITH " + (items + 51));
+            statement.execute("ANALYZE");
+        }
+    }
+
+    private void insert(String sql, long rows) throws SQLException {
+        long started = System.nanoTime();
+
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (long from = 1; from <= rows; from += CHUNK) {
+                statement.setLong(1, from);
+                statement.setLong(2, Math.min(from + CHUNK - 1, rows));
+                statement.executeUpdate();
+            }
+        }
+
+        System.out.printf("%s: %d строк за %d мс%n", sql.substring(12, sql.indexOf(' ', 12)), rows,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private static String word(String index) {
+        StringBuilder sql = new StringBuilder("CASE MOD(" + index + ", " + WORDS.length + ")");
+
+        for (int i = 0; i < WORDS.length; i++) {
+            sql.append(" WHEN ").append(i).append(" THEN '").append(WORDS[i]).append("'");
+        }
+
+        return sql.append(" END").toString();
+    }
+}
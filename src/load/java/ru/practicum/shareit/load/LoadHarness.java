@@ -0,0 +1,250 @@
+package ru.practicum.shareit.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import ru.practicum.shareit.ShareItApp;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/*
+ * Нагрузочный прогон: генерирует набор данных, поднимает приложение на профиле load (H2 в режиме PostgreSQL)
+ * и гоняет по нему взвешенную смесь запросов из load.clients параллельных клиентов.
+ * Гистограммы задержек по каждому эндпоинту пишутся в target/load/<время запуска>/ в формате HdrHistogram,
+ * их можно сравнивать между прогонами. Настройки - системные свойства load.*, см. поля ниже.
+ *
+ * mvn -P load -DskipTests test-compile exec:exec -Dload.jvmArgs="-Xmx8g -Dload.bookings=10000000"
+ */
+public final class LoadHarness {
+    private static final String JDBC_URL = "jdbc:h2:mem:shareit-load;MODE=PostgreSQL;DB_CLOSE_DELAY=-1";
+    private static final String USER_ID_HEADER = "X-Sharer-User-Id";
+    private static final String[] STATES = {"ALL", "CURRENT", "PAST", "FUTURE", "WAITING", "REJECTED"};
+
+    private static final long USERS = Long.getLong("load.users", 10_000);
+    private static final long ITEMS = Long.getLong("load.items", 100_000);
+    private static final long BOOKINGS = Long.getLong("load.bookings", 1_000_000);
+    private static final long COMMENTS = Long.getLong("load.comments", 100_000);
+    private static final int CLIENTS = Integer.getInteger("load.clients", 32);
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmup", 30);
+    private static final int DURATION_SECONDS = Integer.getInteger("load.duration", 120);
+    // Веса эндпоинтов в смеси запросов
+    private static final String MIX = System.getProperty("load.mix", "search:40,items:20,bookings:25,owner:15");
+
+    private LoadHarness() {
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        try (Connection connection = DriverManager.getConnection(JDBC_URL, "load", "load")) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema.sql"));
+            new DatasetGenerator(connection).generate(USERS, ITEMS, BOOKINGS, COMMENTS);
+
+            // Соединение держим открытым до конца прогона вместе с DB_CLOSE_DELAY, база живет в памяти
+            ServletWebServerApplicationContext context = (ServletWebServerApplicationContext)
+                    new SpringApplicationBuilder(ShareItApp.class)
+                            .profiles("load")
+                            .properties("server.port=0", "spring.datasource.url=" + JDBC_URL)
+                            .run(args);
+
+            try {
+                run("http://localhost:" + context.getWebServer().getPort());
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    private static void run(String baseUrl) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(CLIENTS))
+                .build();
+        List<Endpoint> endpoints = endpoints(baseUrl);
+        List<Endpoint> weighted = weighted(endpoints);
+
+        System.out.printf("Прогрев %d с%n", WARMUP_SECONDS);
+        drive(client, weighted, WARMUP_SECONDS);
+        endpoints.forEach(Endpoint::reset);
+
+        System.out.printf("Замер %d с, %d клиентов, смесь %s%n", DURATION_SECONDS, CLIENTS, MIX);
+        drive(client, weighted, DURATION_SECONDS);
+
+        report(endpoints);
+    }
+
+    private static List<Endpoint> endpoints(String baseUrl) {
+        Map<String, Function<ThreadLocalRandom, HttpRequest>> requests = new LinkedHashMap<>();
+
+        requests.put("search", random -> get(baseUrl + "/items/search?text=" +
+                URLEncoder.encode(DatasetGenerator.WORDS[random.nextInt(DatasetGenerator.WORDS.length)]
+                        .substring(0, 4), StandardCharsets.UTF_8), randomUser(random)));
+        requests.put("items", random -> get(baseUrl + "/items", randomUser(random)));
+        requests.put("bookings", random -> get(baseUrl + "/bookings?state=" + STATES[random.nextInt(STATES.length)],
+                randomUser(random)));
+        requests.put("owner", random -> get(baseUrl + "/bookings/owner?state=" +
+                STATES[random.nextInt(STATES.length)], randomUser(random)));
+
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (String part : MIX.split(",")) {
+            String[] nameAndWeight = part.split(":");
+            Function<ThreadLocalRandom, HttpRequest> request = requests.get(nameAndWeight[0].trim());
+
+            if (request == null) {
+                throw new IllegalArgumentException("Неизвестный эндпоинт в load.mix: " + nameAndWeight[0]);
+            }
+
+            endpoints.add(new Endpoint(nameAndWeight[0].trim(), Integer.parseInt(nameAndWeight[1].trim()), request));
+        }
+
+        return endpoints;
+    }
+
+    // Список, в котором каждый эндпоинт повторен столько раз, каков его вес: случайный элемент дает нужную смесь
+    private static List<Endpoint> weighted(List<Endpoint> endpoints) {
+        List<Endpoint> weighted = new ArrayList<>();
+
+        for (Endpoint endpoint : endpoints) {
+            for (int i = 0; i < endpoint.weight; i++) {
+                weighted.add(endpoint);
+            }
+        }
+
+        return weighted;
+    }
+
+    private static void drive(HttpClient client, List<Endpoint> weighted, int seconds) throws InterruptedException {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        for (int i = 0; i < CLIENTS; i++) {
+            clients.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+
+                while (System.nanoTime() < deadline) {
+                    weighted.get(random.nextInt(weighted.size())).call(client, random);
+                }
+            });
+        }
+
+        clients.shutdown();
+        clients.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+    }
+
+    private static void report(List<Endpoint> endpoints) throws IOException {
+        Path directory = Paths.get("target", "load",
+                LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        Files.createDirectories(directory);
+
+        try (PrintStream summary = new PrintStream(Files.newOutputStream(directory.resolve("summary.txt")),
+                true, StandardCharsets.UTF_8)) {
+            String header = String.format("dataset users=%d items=%d bookings=%d comments=%d, clients=%d, %d s%n" +
+                            "%-10s %10s %8s %10s %10s %10s %10s %10s%n", USERS, ITEMS, BOOKINGS, COMMENTS,
+                    CLIENTS, DURATION_SECONDS, "endpoint", "requests", "errors", "rps", "p50 ms", "p90 ms", "p99 ms",
+                    "max ms");
+            summary.print(header);
+            System.out.print(header);
+
+            for (Endpoint endpoint : endpoints) {
+                Histogram histogram = endpoint.recorder.getIntervalHistogram();
+                String line = String.format("%-10s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n", endpoint.name,
+                        histogram.getTotalCount(), endpoint.errors.get(),
+                        histogram.getTotalCount() / (double) DURATION_SECONDS,
+                        millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                        millis(histogram.getValueAtPercentile(99)), millis(histogram.getMaxValue()));
+                summary.print(line);
+                System.out.print(line);
+
+                // Полное распределение в миллисекундах, формат понимает HdrHistogram plotter
+                try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(endpoint.name + ".hgrm")),
+                        true, StandardCharsets.UTF_8)) {
+                    histogram.outputPercentileDistribution(out, 1_000_000.0);
+                }
+            }
+        }
+
+        System.out.println("Гистограммы записаны в " + directory.toAbsolutePath());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static long randomUser(ThreadLocalRandom random) {
+        return random.nextLong(USERS) + 1;
+    }
+
+    private static HttpRequest get(String url, long userId) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header(USER_ID_HEADER, String.valueOf(userId))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    private static final class Endpoint {
+        private final String name;
+        private final int weight;
+        private final Function<ThreadLocalRandom, HttpRequest> request;
+        // Задержки в наносекундах, до минуты с тремя значащими цифрами
+        private final Recorder recorder = new Recorder(TimeUnit.MINUTES.toNanos(1), 3);
+        private final AtomicLong errors = new AtomicLong();
+
+        private Endpoint(String name, int weight, Function<ThreadLocalRandom, HttpRequest> request) {
+            this.name = name;
+            this.weight = weight;
+            this.request = request;
+        }
+
+        private void call(HttpClient client, ThreadLocalRandom random) {
+            long started = System.nanoTime();
+
+            try {
+                HttpResponse<Void> response = client.send(request.apply(random), HttpResponse.BodyHandlers.discarding());
+
+                if (response.statusCode() >= 400) {
+                    errors.incrementAndGet();
+                }
+            } catch (IOException e) {
+                errors.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            recorder.recordValue(Math.min(System.nanoTime() - started, TimeUnit.MINUTES.toNanos(1)));
+        }
+
+        private void reset() {
+            recorder.reset();
+            errors.set(0);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ru.practicum.shareit.booking.archive;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.repository.BookingArchiveRepository;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.service.ItemSummaryService;
+
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.util.List;
+
+/*
+ * Переносит брони, закончившиеся раньше чем archive-after назад, из BOOKINGS в BOOKINGS_ARCHIVE.
+ * Горячая таблица остается размером с недавние и будущие брони, и CURRENT, FUTURE, WAITING и REJECTED
+ * не просматривают всю историю. Списки PAST и ALL дочитывают архив сами (BookingServiceImpl).
+ *
+ * Перенос идет порциями, каждая в своей транзакции: блокировка порции, новая версия броней в сводках их вещей
+ * (и пометка устаревшими тех, где бронь порции была последней или следующей), копия в архив, удаление из BOOKINGS.
+ * Читатель видит бронь либо в одной таблице, либо в другой, а блокировки держатся только на время порции.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookingArchiver {
+    private final BookingRepository repository;
+    private final BookingArchiveRepository archiveRepository;
+    private final ItemSummaryService summaryService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${shareit.bookings.archive.after:P6M}")
+    private Period archiveAfter;
+
+    @Value("${shareit.bookings.archive.chunk-size:1000}")
+    private int chunkSize;
+
+    // Возвращает число перенесенных броней
+    @Scheduled(fixedDelayString = "${shareit.bookings.archive.delay:PT1H}")
+    public int archive() {
+        final LocalDateTime cutoff = LocalDateTime.now().minus(archiveAfter);
+        int total = 0;
+        Integer archived;
+
+        do {
+            archived = transactionTemplate.execute(status -> archiveChunk(cutoff));
+            total += archived == null ? 0 : archived;
+        } while (archived != null && archived == chunkSize);
+
+        if (total > 0) {
+            log.info("В архив перенесено {} броней, закончившихся до {}", total, cutoff);
+        }
+
+        return total;
+    }
+
+    private int archiveChunk(LocalDateTime cutoff) {
+        List<Long> ids = repository.lockEndedBefore(cutoff, PageRequest.of(0, chunkSize));
+
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        summaryService.bookingsArchived(repository.findItemIdsByIds(ids), ids);
+        archiveRepository.copyFromBookings(ids);
+        repository.deleteArchived(ids);
+
+        return ids.size();
+    }
+}
@@ -2,57 +2,185 @@ package ru.practicum.shareit.booking.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.shareit.booking.dto.BookingCursor;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
+import ru.practicum.shareit.booking.dto.BookingListDto;
+import ru.practicum.shareit.booking.dto.BookingMapper;
 import ru.practicum.shareit.booking.dto.BookingRequestDto;
 import ru.practicum.shareit.booking.dto.BookingResponseDto;
 import ru.practicum.shareit.booking.model.State;
 import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.booking.stream.BookingEventStream;
+import ru.practicum.shareit.common.BulkheadGroup;
+import ru.practicum.shareit.common.Bulkheads;
+import ru.practicum.shareit.common.ETags;
+import ru.practicum.shareit.common.SqlBudget;
 
 import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
+import javax.validation.constraints.Size;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping(path = "/bookings")
 @RequiredArgsConstructor
 @Slf4j
+@Validated
 public class BookingController {
     private final BookingService service;
+    private final Bulkheads bulkheads;
+    private final BookingEventStream stream;
     private static final String USER_ID_HEADER = "X-Sharer-User-Id";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+    private static final String NORMALIZED = "shape=normalized";
+    private static final int MAX_BATCH_SIZE = 1000;
 
+    // Включая блокировку строки вещи и проверку пересечений по базе, блокировку и обновление сводки вещи,
+    // блокировку id событий и само событие брони
+    @SqlBudget(9)
     @PostMapping
-    public BookingResponseDto createBooking(@RequestHeader(USER_ID_HEADER) Long userId,
-                                            @Valid @RequestBody BookingRequestDto bookingDto) {
+    public CompletableFuture<BookingResponseDto> createBooking(@RequestHeader(USER_ID_HEADER) Long userId,
+                                                               @Valid @RequestBody BookingRequestDto bookingDto) {
         log.info("createBooking");
-        return service.createBooking(bookingDto, userId);
+        return bulkheads.supply(BulkheadGroup.BOOKING_WRITES, () -> service.createBooking(bookingDto, userId));
     }
 
+    @SqlBudget(8)
     @PatchMapping("/{bookingId}")
-    public BookingResponseDto approveBooking(@RequestHeader(USER_ID_HEADER) Long userId,
-                                             @PathVariable Long bookingId,
-                                             @RequestParam boolean approved) {
+    public CompletableFuture<BookingResponseDto> approveBooking(@RequestHeader(USER_ID_HEADER) Long userId,
+                                                                @PathVariable Long bookingId,
+                                                                @RequestParam boolean approved) {
         log.info("approveBooking");
-        return service.approveBooking(bookingId, userId, approved);
+        return bulkheads.supply(BulkheadGroup.BOOKING_WRITES,
+                () -> service.approveBooking(bookingId, userId, approved));
     }
 
+    // Решения по нескольким броням одной транзакцией, результат по каждой броне в порядке запроса.
+    // Сводки вещей пакет не пересчитывает, а только помечает устаревшими. События - одна вставка на новый статус.
+    // Строки вещей блокируются одним запросом на весь пакет
+    @SqlBudget(9)
+    @PatchMapping("/batch")
+    public CompletableFuture<List<BookingDecisionResultDto>> approveBookings(
+            @RequestHeader(USER_ID_HEADER) Long userId,
+            @RequestBody @NotEmpty @Size(max = MAX_BATCH_SIZE) List<@Valid BookingDecisionDto> decisions) {
+        log.info("approveBookings");
+        return bulkheads.supply(BulkheadGroup.BOOKING_WRITES, () -> service.approveBookings(userId, decisions));
+    }
 
+    @SqlBudget(3)
     @GetMapping("/{bookingId}")
-    public BookingResponseDto findBookingById(@RequestHeader(USER_ID_HEADER) Long userId,
-                                              @PathVariable Long bookingId) {
+    public CompletableFuture<ResponseEntity<BookingResponseDto>> findBookingById(
+            @RequestHeader(USER_ID_HEADER) Long userId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @PathVariable Long bookingId) {
         log.info("findBookingById");
-        return service.getBooking(bookingId, userId);
+        return bulkheads.supply(BulkheadGroup.BOOKING_READS, () -> ETags.conditional(ifNoneMatch,
+                service.getBookingETag(bookingId, userId), () -> service.getBooking(bookingId, userId)));
     }
 
+    // PAST и ALL дочитывают архив броней отдельным запросом
+    @SqlBudget(3)
     @GetMapping
-    public List<BookingResponseDto> findUserBookings(@RequestHeader(USER_ID_HEADER) Long userId,
-                                                     @RequestParam(defaultValue = "ALL") State state) {
+    public CompletableFuture<ResponseEntity<List<BookingResponseDto>>> findUserBookings(
+            @RequestHeader(USER_ID_HEADER) Long userId,
+            @RequestParam(defaultValue = "ALL") State state,
+            @RequestParam(defaultValue = "0") @PositiveOrZero int from,
+            @RequestParam(required = false) @Positive Integer size,
+            @RequestParam(required = false) String cursor) {
         log.info("findUserBookings");
-        return service.getBookingByBooker(userId, state);
+        BookingCursor after = decodeCursor(cursor);
+        int limit = pageSize(size);
+        return bulkheads.supply(BulkheadGroup.BOOKING_READS, () -> withNextCursor(
+                service.getBookingByBooker(userId, state, after, from, limit), limit, Function.identity()));
+    }
+
+    // Тот же список в нормализованном виде: авторы и вещи отдельно, каждый один раз
+    @SqlBudget(3)
+    @GetMapping(params = NORMALIZED)
+    public CompletableFuture<ResponseEntity<BookingListDto>> findUserBookingsNormalized(
+            @RequestHeader(USER_ID_HEADER) Long userId,
+            @RequestParam(defaultValue = "ALL") State state,
+            @RequestParam(defaultValue = "0") @PositiveOrZero int from,
+            @RequestParam(required = false) @Positive Integer size,
+            @RequestParam(required = false) String cursor) {
+        log.info("findUserBookingsNormalized");
+        BookingCursor after = decodeCursor(cursor);
+        int limit = pageSize(size);
+        return bulkheads.supply(BulkheadGroup.BOOKING_READS, () -> withNextCursor(
+                service.getBookingByBooker(userId, state, after, from, limit), limit, BookingMapper::toBookingListDto));
     }
 
+    @SqlBudget(3)
     @GetMapping("/owner")
-    public List<BookingResponseDto> findByItemOwnerBookings(@RequestHeader(USER_ID_HEADER) Long userId,
-                                                            @RequestParam(defaultValue = "ALL") State state) {
+    public CompletableFuture<ResponseEntity<List<BookingResponseDto>>> findByItemOwnerBookings(
+            @RequestHeader(USER_ID_HEADER) Long userId,
+            @RequestParam(defaultValue = "ALL") State state,
+            @RequestParam(defaultValue = "0") @PositiveOrZero int from,
+            @RequestParam(required = false) @Positive Integer size,
+            @RequestParam(required = false) String cursor) {
         log.info("findByItemOwnerBookings");
-        return service.getBookingItemsByOwner(userId, state);
+        BookingCursor after = decodeCursor(cursor);
+        int limit = pageSize(size);
+        return bulkheads.supply(BulkheadGroup.BOOKING_READS, () -> withNextCursor(
+                service.getBookingItemsByOwner(userId, state, after, from, limit), limit, Function.identity()));
+    }
+
+    @SqlBudget(3)
+    @GetMapping(path = "/owner", params = NORMALIZED)
+    public CompletableFuture<ResponseEntity<BookingListDto>> findByItemOwnerBookingsNormalized(
+            @RequestHeader(USER_ID_HEADER) Long userId,
+            @RequestParam(defaultValue = "ALL") State state,
+            @RequestParam(defaultValue = "0") @PositiveOrZero int from,
+            @RequestParam(required = false) @Positive Integer size,
+            @RequestParam(required = false) String cursor) {
+        log.info("findByItemOwnerBookingsNormalized");
+        BookingCursor after = decodeCursor(cursor);
+        int limit = pageSize(size);
+        return bulkheads.supply(BulkheadGroup.BOOKING_READS, () -> withNextCursor(
+                service.getBookingItemsByOwner(userId, state, after, from, limit), limit,
+                BookingMapper::toBookingListDto));
+    }
+
+    // Изменения статусов броней пользователя (как автора и как владельца вещи) по SSE.
+    // Last-Event-ID возобновляет поток после разрыва: сначала пропущенные события, затем новые.
+    // Пропущенные читаются до границы уже закоммиченных событий: блокировка полос и максимальный id
+    @SqlBudget(4)
+    @GetMapping("/stream")
+    public SseEmitter streamBookingEvents(@RequestHeader(USER_ID_HEADER) Long userId,
+                                          @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false)
+                                          Long lastEventId) {
+        log.info("streamBookingEvents");
+        return stream.subscribe(userId, lastEventId);
+    }
+
+    // Без size список отдается целиком, как и до постраничного вывода
+    private static int pageSize(Integer size) {
+        return size == null ? Integer.MAX_VALUE : size;
+    }
+
+    private BookingCursor decodeCursor(String cursor) {
+        return cursor == null || cursor.isBlank() ? null : BookingCursor.decode(cursor);
+    }
+
+    // Если страница заполнена целиком, отдаем курсор на следующую в заголовке, тело ответа - список в виде shape
+    private <T> ResponseEntity<T> withNextCursor(List<BookingResponseDto> bookings, int size,
+                                                 Function<List<BookingResponseDto>, T> shape) {
+        if (bookings.size() < size) {
+            return ResponseEntity.ok(shape.apply(bookings));
+        }
+
+        BookingCursor next = BookingCursor.after(bookings.get(bookings.size() - 1));
+        return ResponseEntity.ok().header(NEXT_CURSOR_HEADER, next.encode()).body(shape.apply(bookings));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,15 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.Data;
+
+import javax.validation.constraints.NotNull;
+
+// Решение владельца по одной брони в пакетном одобрении
+@Data
+public class BookingDecisionDto {
+    @NotNull
+    private Long bookingId;
+
+    @NotNull
+    private Boolean approved;
+}
@@ -0,0 +1,16 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import ru.practicum.shareit.booking.model.Status;
+
+// Итог решения по брони: новый статус, либо причина, по которой решение не применено
+@Data
+@Builder
+public class BookingDecisionResultDto {
+    private Long bookingId;
+
+    private Status status;
+
+    private String error;
+}
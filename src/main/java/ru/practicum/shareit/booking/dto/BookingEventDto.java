@@ -0,0 +1,27 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import ru.practicum.shareit.booking.model.BookingEventType;
+import ru.practicum.shareit.booking.model.Status;
+
+import java.time.LocalDateTime;
+
+// Событие брони в потоке /bookings/stream. Id события передается в поле id самого SSE-события
+@Data
+@Builder
+public class BookingEventDto {
+    private BookingEventType type;
+
+    private Long bookingId;
+
+    private Long itemId;
+
+    private Long bookerId;
+
+    private Status status;
+
+    private LocalDateTime start;
+
+    private LocalDateTime end;
+}
@@ -0,0 +1,20 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import ru.practicum.shareit.item.dto.item.ItemShortResponseDto;
+import ru.practicum.shareit.user.dto.UserDto;
+
+import java.util.List;
+
+// Нормализованный список бронирований (shape=normalized): каждый автор и каждая вещь в ответе один раз,
+// в порядке первого упоминания, а брони ссылаются на них по id
+@Data
+@Builder
+public class BookingListDto {
+    private List<BookingRowDto> bookings;
+
+    private List<UserDto> users;
+
+    private List<ItemShortResponseDto> items;
+}
@@ -1,10 +1,23 @@
 package ru.practicum.shareit.booking.dto;
 
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingEvent;
 import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.item.dto.item.ItemMapper;
+import ru.practicum.shareit.item.dto.item.ItemShortResponseDto;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.dto.UserMapper;
+import ru.practicum.shareit.user.dto.UserSnapshot;
 import ru.practicum.shareit.user.model.User;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public final class BookingMapper {
     private BookingMapper() {
 
@@ -26,8 +39,20 @@ public final class BookingMapper {
                 .status(booking.getStatus())
                 .start(booking.getStart())
                 .end(booking.getEnd())
-                .item(booking.getItem())
-                .booker(booking.getBooker())
+                .item(ItemMapper.toItemShortDto(booking.getItem()))
+                .booker(UserMapper.toUserDto(booking.getBooker()))
+                .build();
+    }
+
+    // Автор брони берется из снимка, чтобы не инициализировать ленивую ссылку на него
+    public static BookingResponseDto toBookingResponseDto(Booking booking, UserSnapshot booker) {
+        return BookingResponseDto.builder()
+                .id(booking.getId())
+                .status(booking.getStatus())
+                .start(booking.getStart())
+                .end(booking.getEnd())
+                .item(ItemMapper.toItemShortDto(booking.getItem()))
+                .booker(UserMapper.toUserDto(booker))
                 .build();
     }
 
@@ -37,4 +62,62 @@ public final class BookingMapper {
                 .bookerId(booking.getBooker().getId())
                 .build();
     }
+
+    public static BookingShortResponseDto toShortBooking(ClosestBookingView booking) {
+        return BookingShortResponseDto.builder()
+                .id(booking.getId())
+                .bookerId(booking.getBookerId())
+                .build();
+    }
+
+    // Для каждой вещи пара [последняя бронь, следующая бронь], любая из них может быть null
+    public static Map<Long, List<BookingShortResponseDto>> toClosestBookingsByItem(List<ClosestBookingView> bookings) {
+        final Map<Long, List<BookingShortResponseDto>> closestBookingToItems = new HashMap<>();
+
+        for (ClosestBookingView booking : bookings) {
+            List<BookingShortResponseDto> closestBookings = closestBookingToItems
+                    .computeIfAbsent(booking.getItemId(), id -> Arrays.asList(null, null));
+
+            closestBookings.set(booking.getUpcoming() ? 1 : 0, toShortBooking(booking));
+        }
+
+        return closestBookingToItems;
+    }
+
+    public static BookingEventDto toBookingEventDto(BookingEvent event) {
+        return BookingEventDto.builder()
+                .type(event.getType())
+                .bookingId(event.getBookingId())
+                .itemId(event.getItemId())
+                .bookerId(event.getBookerId())
+                .status(event.getType().getStatus())
+                .start(event.getStart())
+                .end(event.getEnd())
+                .build();
+    }
+
+    public static BookingListDto toBookingListDto(List<BookingResponseDto> bookings) {
+        final List<BookingRowDto> rows = new ArrayList<>(bookings.size());
+        final Map<Long, UserDto> users = new LinkedHashMap<>();
+        final Map<Long, ItemShortResponseDto> items = new LinkedHashMap<>();
+
+        for (BookingResponseDto booking : bookings) {
+            users.putIfAbsent(booking.getBooker().getId(), booking.getBooker());
+            items.putIfAbsent(booking.getItem().getId(), booking.getItem());
+            rows.add(BookingRowDto.builder()
+                    .id(booking.getId())
+                    .start(booking.getStart())
+                    .end(booking.getEnd())
+                    .status(booking.getStatus())
+                    .bookerId(booking.getBooker().getId())
+                    .itemId(booking.getItem().getId())
+                    .build());
+        }
+
+        return BookingListDto.builder()
+                .bookings(rows)
+                .users(new ArrayList<>(users.values()))
+                .items(new ArrayList<>(items.values()))
+                .build();
+    }
 }
@@ -1,16 +1,18 @@
 package ru.practicum.shareit.booking.dto;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import ru.practicum.shareit.booking.model.Status;
-import ru.practicum.shareit.item.model.Item;
-import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.item.dto.item.ItemShortResponseDto;
+import ru.practicum.shareit.user.dto.UserDto;
 
 import java.time.LocalDateTime;
 
 // ДТО для ответа
 @Data
 @Builder
+@AllArgsConstructor
 public class BookingResponseDto {
     private long id;
 
@@ -20,7 +22,17 @@ public class BookingResponseDto {
 
     private Status status;
 
-    private User booker;
+    private UserDto booker;
 
-    private Item item;
+    private ItemShortResponseDto item;
+
+    // Конструктор для JPQL-проекций в BookingRepository: строка запроса сразу превращается в ответ,
+    // без загрузки и отслеживания сущностей
+    public BookingResponseDto(long id, LocalDateTime start, LocalDateTime end, Status status,
+                              Long bookerId, String bookerName, String bookerEmail,
+                              Long itemId, String itemName, String itemDescription, Boolean itemAvailable) {
+        this(id, start, end, status,
+                UserDto.builder().id(bookerId).name(bookerName).email(bookerEmail).build(),
+                new ItemShortResponseDto(itemId, itemName, itemDescription, itemAvailable));
+    }
 }
@@ -0,0 +1,24 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import ru.practicum.shareit.booking.model.Status;
+
+import java.time.LocalDateTime;
+
+// Бронь в нормализованном списке: автор и вещь только по id, сами они лежат в BookingListDto
+@Data
+@Builder
+public class BookingRowDto {
+    private long id;
+
+    private LocalDateTime start;
+
+    private LocalDateTime end;
+
+    private Status status;
+
+    private Long bookerId;
+
+    private Long itemId;
+}
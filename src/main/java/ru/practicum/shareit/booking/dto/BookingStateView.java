@@ -0,0 +1,18 @@
+package ru.practicum.shareit.booking.dto;
+
+import ru.practicum.shareit.booking.model.Status;
+
+import java.time.LocalDateTime;
+
+// Проекция брони для пакетного одобрения: только то, что нужно для проверок и индекса пересечений
+public interface BookingStateView {
+    Long getId();
+
+    Long getItemId();
+
+    Status getStatus();
+
+    LocalDateTime getStart();
+
+    LocalDateTime getEnd();
+}
@@ -0,0 +1,10 @@
+package ru.practicum.shareit.booking.dto;
+
+// Версии всего, что попадает в ответ GET /bookings/{id}: сама бронь, вещь и автор брони
+public interface BookingVersionView {
+    Long getVersion();
+
+    Long getItemVersion();
+
+    Long getBookerVersion();
+}
@@ -0,0 +1,17 @@
+package ru.practicum.shareit.booking.dto;
+
+import java.time.LocalDateTime;
+
+// Проекция для ближайших бронирований вещи: одна строка на последнюю и одна на следующую бронь
+public interface ClosestBookingView {
+    Long getItemId();
+
+    Long getId();
+
+    Long getBookerId();
+
+    LocalDateTime getStart();
+
+    // true - следующая бронь, false - последняя
+    Boolean getUpcoming();
+}
@@ -0,0 +1,46 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// Бронь, закончившаяся давно и перенесенная BookingArchiver из BOOKINGS. Id сохраняется прежний,
+// сама бронь больше не меняется, поэтому версия - просто значение для ETag
+@Data
+@Builder
+@Entity
+@Table(name = "BOOKINGS_ARCHIVE")
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedBooking {
+    @Id
+    private Long id;
+
+    @Column(name = "START_TIME")
+    private LocalDateTime start;
+
+    @Column(name = "END_TIME")
+    private LocalDateTime end;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "ITEM_ID", referencedColumnName = "ID")
+    @ToString.Exclude
+    private Item item;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "BOOKER_ID", referencedColumnName = "ID")
+    @ToString.Exclude
+    private User booker;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    private Long version;
+}
@@ -0,0 +1,42 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// Событие брони в исходящей очереди (outbox). Пишется в той же транзакции, что и сама бронь,
+// и больше не меняется. Потребители читают события по возрастанию id
+@Data
+@Builder
+@Entity
+@Table(name = "BOOKING_EVENTS")
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    private BookingEventType type;
+
+    private Long bookingId;
+
+    private Long itemId;
+
+    private Long bookerId;
+
+    private Long ownerId;
+
+    @Column(name = "START_TIME")
+    private LocalDateTime start;
+
+    @Column(name = "END_TIME")
+    private LocalDateTime end;
+
+    private LocalDateTime created;
+}
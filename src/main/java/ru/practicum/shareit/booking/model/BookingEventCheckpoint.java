@@ -0,0 +1,24 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+// Докуда потребитель событий броней уже все обработал
+@Data
+@Builder
+@Entity
+@Table(name = "BOOKING_EVENT_CHECKPOINTS")
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingEventCheckpoint {
+    @Id
+    private String consumer;
+
+    private Long lastEventId;
+}
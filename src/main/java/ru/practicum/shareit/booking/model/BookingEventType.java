@@ -0,0 +1,33 @@
+package ru.practicum.shareit.booking.model;
+
+// Тип события жизненного цикла брони в BOOKING_EVENTS
+public enum BookingEventType {
+    CREATED,
+    APPROVED,
+    REJECTED;
+
+    public static BookingEventType of(Status status) {
+        switch (status) {
+            case WAITING:
+                return CREATED;
+            case APPROVED:
+                return APPROVED;
+            case REJECTED:
+                return REJECTED;
+            default:
+                throw new IllegalArgumentException("Unknown status: " + status);
+        }
+    }
+
+    // Статус брони сразу после события
+    public Status getStatus() {
+        switch (this) {
+            case APPROVED:
+                return Status.APPROVED;
+            case REJECTED:
+                return Status.REJECTED;
+            default:
+                return Status.WAITING;
+        }
+    }
+}
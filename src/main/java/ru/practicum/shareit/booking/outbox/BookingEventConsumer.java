@@ -0,0 +1,25 @@
+package ru.practicum.shareit.booking.outbox;
+
+import ru.practicum.shareit.booking.model.BookingEvent;
+
+import java.util.List;
+
+/*
+ * Потребитель событий броней. Любой бин с этим интерфейсом BookingOutboxDispatcher находит сам.
+ * Доставка не реже одного раза: после сбоя порция придет снова, поэтому обработка должна переносить повторы.
+ * Новый потребитель начинает с самого старого события, которое еще хранится в BOOKING_EVENTS, если не
+ * startsFromLatest.
+ */
+public interface BookingEventConsumer {
+    // Имя чекпоинта в BOOKING_EVENT_CHECKPOINTS, не должно меняться между запусками. Общее для всех экземпляров
+    String getName();
+
+    // События приходят по возрастанию id. Исключение - порция не подтверждена и будет доставлена снова
+    void consume(List<BookingEvent> events);
+
+    // true - история не нужна: чекпоинт живет только в памяти экземпляра, а не в BOOKING_EVENT_CHECKPOINTS,
+    // и при запуске потребитель начинает с последнего события в очереди. Каждый экземпляр получает все события
+    default boolean startsFromLatest() {
+        return false;
+    }
+}
@@ -0,0 +1,27 @@
+package ru.practicum.shareit.booking.outbox;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.model.BookingEvent;
+
+import java.util.List;
+
+// Счетчики событий броней по типу (shareit.bookings.events) для дашбордов вместо опроса /bookings/owner
+@Component
+@RequiredArgsConstructor
+public class BookingEventMetrics implements BookingEventConsumer {
+    private final MeterRegistry registry;
+
+    @Override
+    public String getName() {
+        return "metrics";
+    }
+
+    @Override
+    public void consume(List<BookingEvent> events) {
+        for (BookingEvent event : events) {
+            registry.counter("shareit.bookings.events", "type", event.getType().name()).increment();
+        }
+    }
+}
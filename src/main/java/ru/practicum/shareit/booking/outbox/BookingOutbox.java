@@ -0,0 +1,83 @@
+package ru.practicum.shareit.booking.outbox;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingEvent;
+import ru.practicum.shareit.booking.model.BookingEventType;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingEventRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/*
+ * Запись событий броней в BOOKING_EVENTS. Вызывается внутри транзакции, меняющей бронь: откат убирает и событие.
+ *
+ * Id событий выдаются под одной из полос BOOKING_EVENT_LOCK (по id брони), которая держится до коммита.
+ * Транзакции на разных полосах друг друга не ждут. Читатели сначала берут все полосы разом (committedUpTo):
+ * к этому моменту любое событие с уже выданным id закоммичено или откачено, а новые получат id больше
+ * прочитанного максимума. Поэтому события до этого id уже не появятся, и чекпоинт потребителя их не обгонит.
+ *
+ * События пишутся последним шагом транзакции: все остальные изменения сбрасываются в базу до полосы, иначе
+ * строки броней и сводок блокировались бы уже под ней, и две транзакции на одной полосе могли бы ждать друг друга.
+ */
+@Component
+@RequiredArgsConstructor
+public class BookingOutbox {
+    // Число строк в BOOKING_EVENT_LOCK (schema.sql)
+    private static final int STRIPES = 64;
+
+    private final BookingEventRepository repository;
+
+    // Событие по текущему статусу брони: WAITING - создание, остальные - решение владельца
+    public void append(Booking booking) {
+        lockIds(booking.getId());
+        repository.save(BookingEvent.builder()
+                .type(BookingEventType.of(booking.getStatus()))
+                .bookingId(booking.getId())
+                .itemId(booking.getItem().getId())
+                .bookerId(booking.getBooker().getId())
+                .ownerId(booking.getItem().getOwner().getId())
+                .start(booking.getStart())
+                .end(booking.getEnd())
+                .created(LocalDateTime.now())
+                .build());
+    }
+
+    // События броней, которые пакет перевел в status
+    public void appendAll(Collection<Long> bookingIds, Status status) {
+        if (!bookingIds.isEmpty()) {
+            lockIds(bookingIds.iterator().next());
+            repository.insertForBookings(BookingEventType.of(status).name(), bookingIds, LocalDateTime.now());
+        }
+    }
+
+    // Id, до которого включительно все события уже видны и новых не появится. Вызывается внутри транзакции,
+    // полосы держатся до ее конца
+    public long committedUpTo() {
+        repository.lockAllStripes();
+        return repository.findMaxId().orElse(0L);
+    }
+
+    // Транзакция держит одну полосу, даже если пишет события несколько раз: две полосы в разном порядке
+    // у двух транзакций замкнули бы ожидание по кругу
+    private void lockIds(long bookingId) {
+        repository.flush();
+
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+
+        repository.lockStripe(Math.floorMod(Long.hashCode(bookingId), STRIPES));
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResource(BookingOutbox.this);
+            }
+        });
+    }
+}
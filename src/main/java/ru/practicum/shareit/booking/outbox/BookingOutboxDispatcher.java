@@ -0,0 +1,153 @@
+package ru.practicum.shareit.booking.outbox;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.model.BookingEvent;
+import ru.practicum.shareit.booking.model.BookingEventCheckpoint;
+import ru.practicum.shareit.booking.repository.BookingEventCheckpointRepository;
+import ru.practicum.shareit.booking.repository.BookingEventRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/*
+ * Раздает события из BOOKING_EVENTS потребителям (BookingEventConsumer) порциями по возрастанию id.
+ * У каждого потребителя свой чекпоинт, поэтому упавший потребитель не задерживает остальных. Чекпоинты
+ * в BOOKING_EVENT_CHECKPOINTS общие для экземпляров, а у потребителей с startsFromLatest - свои в памяти.
+ * Чекпоинт сдвигается только после того, как потребитель принял порцию, отсюда доставка не реже одного раза.
+ * Пропусков нет: каждая раздача читает только события до BookingOutbox.committedUpTo, а с меньшими id
+ * новые события уже не появятся.
+ * Потребители вызываются вне транзакции. Диспетчер читает только BOOKING_EVENTS, таблицу BOOKINGS он не трогает.
+ */
+@Component
+@Slf4j
+public class BookingOutboxDispatcher {
+    private final BookingEventRepository repository;
+    private final BookingOutbox outbox;
+    private final BookingEventCheckpointRepository checkpoints;
+    private final List<BookingEventConsumer> consumers;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration retention;
+    // Чекпоинты потребителей с startsFromLatest. В общую таблицу их не пишем: экземпляры сбрасывали бы их друг другу
+    private final Map<String, Long> localCheckpoints = new ConcurrentHashMap<>();
+
+    public BookingOutboxDispatcher(BookingEventRepository repository,
+                                   BookingOutbox outbox,
+                                   BookingEventCheckpointRepository checkpoints,
+                                   List<BookingEventConsumer> consumers,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${shareit.bookings.outbox.batch-size:500}") int batchSize,
+                                   @Value("${shareit.bookings.outbox.retention:P30D}") Duration retention) {
+        this.repository = repository;
+        this.outbox = outbox;
+        this.checkpoints = checkpoints;
+        this.consumers = consumers;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.retention = retention;
+    }
+
+    // Чекпоинты новых потребителей заводим сразу, иначе очистка не знала бы, что им еще нужны старые события
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerConsumers() {
+        transactionTemplate.executeWithoutResult(status -> {
+            final long upToId = outbox.committedUpTo();
+
+            for (BookingEventConsumer consumer : consumers) {
+                if (consumer.startsFromLatest()) {
+                    localCheckpoint(consumer, upToId);
+                } else if (!checkpoints.existsById(consumer.getName())) {
+                    checkpoints.save(BookingEventCheckpoint.builder()
+                            .consumer(consumer.getName()).lastEventId(0L).build());
+                }
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.bookings.outbox.dispatch-delay:PT1S}")
+    public void dispatch() {
+        // Граница берется в отдельной короткой транзакции: полосы BOOKING_EVENT_LOCK не держатся, пока идет раздача
+        final Long upToId = transactionTemplate.execute(status -> outbox.committedUpTo());
+
+        for (BookingEventConsumer consumer : consumers) {
+            try {
+                int delivered;
+
+                do {
+                    delivered = deliverBatch(consumer, upToId);
+                } while (delivered == batchSize);
+            } catch (RuntimeException e) {
+                log.warn("Потребитель событий броней {} не принял порцию, она придет снова", consumer.getName(), e);
+            }
+        }
+    }
+
+    // События старше retention, которые уже обработали все потребители
+    @Scheduled(fixedDelayString = "${shareit.bookings.outbox.purge-delay:PT1H}")
+    public void purge() {
+        // Потребителям с чекпоинтом в памяти старые события не нужны
+        List<String> names = consumers.stream()
+                .filter(consumer -> !consumer.startsFromLatest())
+                .map(BookingEventConsumer::getName)
+                .collect(Collectors.toList());
+
+        if (names.isEmpty()) {
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> checkpoints.findMinLastEventId(names)
+                .ifPresent(delivered -> repository.deleteDelivered(delivered,
+                        LocalDateTime.now().minus(retention))));
+    }
+
+    private int deliverBatch(BookingEventConsumer consumer, long upToId) {
+        List<BookingEvent> events = transactionTemplate.execute(status -> {
+            long after = consumer.startsFromLatest()
+                    ? localCheckpoint(consumer, upToId)
+                    : checkpoints.findById(consumer.getName())
+                            .map(BookingEventCheckpoint::getLastEventId)
+                            .orElse(0L);
+
+            return repository.findBatch(after, upToId, PageRequest.of(0, batchSize));
+        });
+
+        if (events == null || events.isEmpty()) {
+            return 0;
+        }
+
+        consumer.consume(events);
+
+        long lastEventId = events.get(events.size() - 1).getId();
+
+        if (consumer.startsFromLatest()) {
+            localCheckpoints.merge(consumer.getName(), lastEventId, Math::max);
+            return events.size();
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (checkpoints.advance(consumer.getName(), lastEventId) == 0
+                    && !checkpoints.existsById(consumer.getName())) {
+                checkpoints.save(BookingEventCheckpoint.builder()
+                        .consumer(consumer.getName()).lastEventId(lastEventId).build());
+            }
+        });
+
+        return events.size();
+    }
+
+    // Первая раздача после запуска начинает с последнего уже закоммиченного события в очереди
+    private long localCheckpoint(BookingEventConsumer consumer, long upToId) {
+        return localCheckpoints.computeIfAbsent(consumer.getName(), name -> upToId);
+    }
+}
@@ -0,0 +1,13 @@
+package ru.practicum.shareit.booking.overlap;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+// Полуинтервал [start, end) брони вещи, все что нужно для проверки пересечений
+@Value
+public class BookingInterval {
+    Long id;
+    LocalDateTime start;
+    LocalDateTime end;
+}
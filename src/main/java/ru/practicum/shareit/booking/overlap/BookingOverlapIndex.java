@@ -0,0 +1,123 @@
+package ru.practicum.shareit.booking.overlap;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.booking.dto.BookingStateView;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.repository.ItemRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Проверка пересечений бронирований с WAITING и APPROVED бронями вещи.
+ *
+ * Брони одной вещи записываются по очереди: под блокировкой вещи, которая держится до конца транзакции.
+ * Блокировки разбиты на полосы по id вещи, так что разные вещи почти никогда не конкурируют в своем экземпляре
+ * приложения, а строка вещи в ITEMS упорядочивает запись и между экземплярами.
+ *
+ * Под блокировкой одиночная бронь сверяется с базой запросом по IDX_BOOKINGS_ITEM_STATUS_TIME.
+ * Пакет решений загружает брони своих вещей одним запросом и проверяет каждое решение по дереву интервалов.
+ */
+@Component
+public class BookingOverlapIndex {
+    private static final int STRIPES = 256;
+    private static final List<Status> ACTIVE = List.of(Status.WAITING, Status.APPROVED);
+    private static final Pageable FIRST = PageRequest.of(0, 1);
+
+    private final BookingRepository repository;
+    private final ItemRepository itemRepository;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public BookingOverlapIndex(BookingRepository repository, ItemRepository itemRepository) {
+        this.repository = repository;
+        this.itemRepository = itemRepository;
+
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    // Захватывает блокировку вещи и ее строку в ITEMS до завершения текущей транзакции
+    public void lock(long itemId) {
+        lockStripe(stripe(itemId));
+        itemRepository.lockByIds(List.of(itemId));
+    }
+
+    // Блокировки нескольких вещей берутся по возрастанию номера полосы, а строки - по возрастанию id,
+    // чтобы пакеты не ждали друг друга по кругу
+    public void lockAll(Collection<Long> itemIds) {
+        if (itemIds.isEmpty()) {
+            return;
+        }
+
+        itemIds.stream()
+                .map(BookingOverlapIndex::stripe)
+                .distinct()
+                .sorted()
+                .forEach(this::lockStripe);
+        itemRepository.lockByIds(itemIds);
+    }
+
+    // Активная бронь вещи, пересекающаяся с [start, end), или null. Вызывается под блокировкой вещи
+    public BookingInterval findOverlap(long itemId, LocalDateTime start, LocalDateTime end) {
+        return repository.findOverlapping(checkLocked(itemId), ACTIVE, start, end, FIRST).stream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    // Деревья активных броней нескольких вещей одним запросом. Вызывается под блокировками этих вещей:
+    // пока они держатся, броней этих вещей никто другой не меняет, и деревья совпадают с базой
+    public Map<Long, IntervalTree> loadTrees(Collection<Long> itemIds) {
+        Map<Long, IntervalTree> trees = new HashMap<>();
+        itemIds.forEach(itemId -> trees.put(checkLocked(itemId), new IntervalTree()));
+
+        if (trees.isEmpty()) {
+            return trees;
+        }
+
+        // Закончившиеся брони новым уже не мешают: начало новой брони не может быть в прошлом
+        for (BookingStateView booking : repository.findActiveStates(itemIds, ACTIVE, LocalDateTime.now())) {
+            trees.get(booking.getItemId()).add(new BookingInterval(booking.getId(), booking.getStart(),
+                    booking.getEnd()));
+        }
+
+        return trees;
+    }
+
+    private long checkLocked(long itemId) {
+        if (!locks[stripe(itemId)].isHeldByCurrentThread()) {
+            throw new IllegalStateException("Брони вещи id = " + itemId + " проверяются без блокировки");
+        }
+
+        return itemId;
+    }
+
+    private void lockStripe(int stripe) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Блокировка вещи возможна только внутри транзакции");
+        }
+
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+
+    private static int stripe(long itemId) {
+        return Math.floorMod(Long.hashCode(itemId), STRIPES);
+    }
+}
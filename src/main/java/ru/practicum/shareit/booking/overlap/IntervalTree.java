@@ -0,0 +1,178 @@
+package ru.practicum.shareit.booking.overlap;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+/*
+ * AVL-дерево интервалов бронирования одной вещи, упорядоченное по (start, id).
+ * Каждый узел хранит максимальный end в своем поддереве, поэтому поиск любого пересечения спускается
+ * по одной ветке и занимает O(log n). Не потокобезопасно: дерево строится и читается в одной транзакции.
+ */
+public class IntervalTree {
+    private static final Comparator<BookingInterval> ORDER = Comparator
+            .comparing(BookingInterval::getStart)
+            .thenComparing(BookingInterval::getId);
+
+    private Node root;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    public void add(BookingInterval interval) {
+        root = insert(root, interval);
+    }
+
+    void remove(BookingInterval interval) {
+        root = delete(root, interval);
+    }
+
+    // Любой интервал, пересекающийся с [start, end), или null
+    public BookingInterval findOverlap(LocalDateTime start, LocalDateTime end) {
+        Node node = root;
+
+        while (node != null) {
+            if (node.interval.getStart().isBefore(end) && start.isBefore(node.interval.getEnd())) {
+                return node.interval;
+            }
+
+            // Если слева есть интервал, заканчивающийся после start, но он не пересекается с запросом,
+            // то он начинается не раньше end, а значит, и все интервалы справа начинаются не раньше end
+            if (node.left != null && node.left.maxEnd.isAfter(start)) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        return null;
+    }
+
+    private Node insert(Node node, BookingInterval interval) {
+        if (node == null) {
+            size++;
+            return new Node(interval);
+        }
+
+        int compare = ORDER.compare(interval, node.interval);
+
+        if (compare < 0) {
+            node.left = insert(node.left, interval);
+        } else if (compare > 0) {
+            node.right = insert(node.right, interval);
+        } else {
+            // Та же бронь с тем же началом: обновляем конец
+            node.interval = interval;
+        }
+
+        return balance(node);
+    }
+
+    private Node delete(Node node, BookingInterval interval) {
+        if (node == null) {
+            return null;
+        }
+
+        int compare = ORDER.compare(interval, node.interval);
+
+        if (compare < 0) {
+            node.left = delete(node.left, interval);
+        } else if (compare > 0) {
+            node.right = delete(node.right, interval);
+        } else {
+            size--;
+
+            if (node.left == null) {
+                return node.right;
+            }
+
+            if (node.right == null) {
+                return node.left;
+            }
+
+            // Узел с двумя детьми замещаем минимальным узлом правого поддерева
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+
+            node.interval = successor.interval;
+            size++;
+            node.right = delete(node.right, successor.interval);
+        }
+
+        return balance(node);
+    }
+
+    private static Node balance(Node node) {
+        update(node);
+        int factor = height(node.left) - height(node.right);
+
+        if (factor > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+
+            return rotateRight(node);
+        }
+
+        if (factor < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+
+            return rotateLeft(node);
+        }
+
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        node.maxEnd = node.interval.getEnd();
+
+        if (node.left != null && node.left.maxEnd.isAfter(node.maxEnd)) {
+            node.maxEnd = node.left.maxEnd;
+        }
+
+        if (node.right != null && node.right.maxEnd.isAfter(node.maxEnd)) {
+            node.maxEnd = node.right.maxEnd;
+        }
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static final class Node {
+        private BookingInterval interval;
+        private LocalDateTime maxEnd;
+        private int height = 1;
+        private Node left;
+        private Node right;
+
+        private Node(BookingInterval interval) {
+            this.interval = interval;
+            this.maxEnd = interval.getEnd();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ru.practicum.shareit.booking.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import ru.practicum.shareit.booking.dto.BookingResponseDto;
+import ru.practicum.shareit.booking.dto.BookingVersionView;
+import ru.practicum.shareit.booking.model.ArchivedBooking;
+import ru.practicum.shareit.booking.model.Status;
+
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hibernate.annotations.QueryHints.NATIVE_SPACES;
+
+// Архив давно закончившихся броней. Все брони тут в прошлом, поэтому для PAST и ALL запрос один и тот же
+public interface BookingArchiveRepository extends JpaRepository<ArchivedBooking, Long> {
+    String RESPONSE = BookingRepository.RESPONSE_SELECT +
+            "FROM ArchivedBooking AS b " +
+            "JOIN b.booker AS bk " +
+            "JOIN b.item AS it ";
+
+    // Копия броней из BOOKINGS с прежними id. Native, потому что end в списке колонок HQL INSERT - ключевое слово.
+    // NATIVE_SPACES называет затронутую таблицу, иначе Hibernate после запроса сбросил бы весь кэш второго уровня
+    @Modifying
+    @QueryHints(@QueryHint(name = NATIVE_SPACES, value = "BOOKINGS_ARCHIVE"))
+    @Query(value = "INSERT INTO BOOKINGS_ARCHIVE (ID, START_TIME, END_TIME, ITEM_ID, BOOKER_ID, STATUS, VERSION) " +
+            "SELECT ID, START_TIME, END_TIME, ITEM_ID, BOOKER_ID, STATUS, VERSION " +
+            "FROM BOOKINGS " +
+            "WHERE ID IN :ids", nativeQuery = true)
+    int copyFromBookings(Collection<Long> ids);
+
+    @Query(RESPONSE +
+            "WHERE b.id = :bookingId AND (bk.id = :userId OR it.owner.id = :userId)")
+    Optional<BookingResponseDto> findResponseByIdForUser(Long bookingId, Long userId);
+
+    @Query("SELECT b.version AS version, it.version AS itemVersion, bk.version AS bookerVersion " +
+            "FROM ArchivedBooking AS b " +
+            "JOIN b.booker AS bk " +
+            "JOIN b.item AS it " +
+            "WHERE b.id = :bookingId AND (bk.id = :userId OR it.owner.id = :userId)")
+    Optional<BookingVersionView> findVersionsByIdForUser(Long bookingId, Long userId);
+
+    // Списки по IDX_BOOKINGS_ARCHIVE_BOOKER_START и IDX_BOOKINGS_ARCHIVE_ITEM_START, порядок как в BOOKINGS
+    @Query(RESPONSE +
+            "WHERE bk.id = :bookerId" + BookingRepository.KEYSET)
+    List<BookingResponseDto> findAllByBooker(Long bookerId, LocalDateTime cursorStart, Long cursorId, Pageable page);
+
+    @Query(RESPONSE +
+            "WHERE it.owner.id = :ownerId" + BookingRepository.KEYSET)
+    List<BookingResponseDto> findAllByOwner(Long ownerId, LocalDateTime cursorStart, Long cursorId, Pageable page);
+
+    // Пользовался ли автор вещью: право на комментарий дает и бронь из архива
+    boolean existsByBookerIdAndItemIdAndStatusAndEndBefore(Long bookerId, Long itemId, Status status,
+                                                           LocalDateTime time);
+}
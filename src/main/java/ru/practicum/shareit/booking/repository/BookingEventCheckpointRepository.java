@@ -0,0 +1,20 @@
+package ru.practicum.shareit.booking.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.practicum.shareit.booking.model.BookingEventCheckpoint;
+
+import java.util.Collection;
+import java.util.Optional;
+
+public interface BookingEventCheckpointRepository extends JpaRepository<BookingEventCheckpoint, String> {
+    // Чекпоинт только растет: запоздавшая запись другого экземпляра не вернет потребителя назад
+    @Modifying
+    @Query("UPDATE BookingEventCheckpoint AS c SET c.lastEventId = :lastEventId " +
+            "WHERE c.consumer = :consumer AND c.lastEventId < :lastEventId")
+    int advance(String consumer, Long lastEventId);
+
+    @Query("SELECT MIN(c.lastEventId) FROM BookingEventCheckpoint AS c WHERE c.consumer IN :consumers")
+    Optional<Long> findMinLastEventId(Collection<String> consumers);
+}
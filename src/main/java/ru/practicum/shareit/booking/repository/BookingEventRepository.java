@@ -0,0 +1,57 @@
+package ru.practicum.shareit.booking.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import ru.practicum.shareit.booking.model.BookingEvent;
+
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hibernate.annotations.QueryHints.NATIVE_SPACES;
+
+public interface BookingEventRepository extends JpaRepository<BookingEvent, Long> {
+    // События целого пакета решений одним запросом, по уже обновленным строкам броней.
+    // NATIVE_SPACES называет затронутую таблицу, иначе Hibernate после запроса сбросил бы весь кэш второго уровня
+    @Modifying
+    @QueryHints(@QueryHint(name = NATIVE_SPACES, value = "BOOKING_EVENTS"))
+    @Query(value = "INSERT INTO BOOKING_EVENTS " +
+            "(TYPE, BOOKING_ID, ITEM_ID, BOOKER_ID, OWNER_ID, START_TIME, END_TIME, CREATED) " +
+            "SELECT :type, b.ID, b.ITEM_ID, b.BOOKER_ID, it.OWNER, b.START_TIME, b.END_TIME, :now " +
+            "FROM BOOKINGS AS b " +
+            "JOIN ITEMS AS it ON it.ID = b.ITEM_ID " +
+            "WHERE b.ID IN (:bookingIds)", nativeQuery = true)
+    int insertForBookings(String type, Collection<Long> bookingIds, LocalDateTime now);
+
+    // Полоса выдачи id событий до конца транзакции. Транзакции на разных полосах друг друга не ждут
+    @Query(value = "SELECT ID FROM BOOKING_EVENT_LOCK WHERE ID = :stripe FOR UPDATE", nativeQuery = true)
+    Integer lockStripe(int stripe);
+
+    // Все полосы по возрастанию: ждет, пока закоммитятся или откатятся транзакции, уже получившие id событий
+    @Query(value = "SELECT ID FROM BOOKING_EVENT_LOCK ORDER BY ID FOR UPDATE", nativeQuery = true)
+    List<Integer> lockAllStripes();
+
+    // Следующая порция для потребителя, по первичному ключу. До upToId события уже не появятся (BookingOutbox)
+    @Query("SELECT e FROM BookingEvent AS e WHERE e.id > :afterId AND e.id <= :upToId ORDER BY e.id")
+    List<BookingEvent> findBatch(Long afterId, Long upToId, Pageable page);
+
+    @Query("SELECT MAX(e.id) FROM BookingEvent AS e")
+    Optional<Long> findMaxId();
+
+    // События пользователя как автора брони или владельца вещи после afterId, по IDX_BOOKING_EVENTS_BOOKER
+    // и IDX_BOOKING_EVENTS_OWNER. Для возобновления потока /bookings/stream
+    @Query("SELECT e FROM BookingEvent AS e " +
+            "WHERE e.id > :afterId AND e.id <= :upToId AND (e.bookerId = :userId OR e.ownerId = :userId) " +
+            "ORDER BY e.id")
+    List<BookingEvent> findForUser(Long userId, Long afterId, Long upToId, Pageable page);
+
+    // Удаляет события, которые уже обработали все потребители
+    @Modifying
+    @Query("DELETE FROM BookingEvent AS e WHERE e.id <= :deliveredId AND e.created < :createdBefore")
+    int deleteDelivered(Long deliveredId, LocalDateTime createdBefore);
+}
@@ -1,22 +1,182 @@
 package ru.practicum.shareit.booking.repository;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.practicum.shareit.booking.dto.BookingResponseDto;
+import ru.practicum.shareit.booking.dto.BookingStateView;
+import ru.practicum.shareit.booking.dto.BookingVersionView;
+import ru.practicum.shareit.booking.dto.ClosestBookingView;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.Status;
-import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.booking.overlap.BookingInterval;
 
+import javax.persistence.LockModeType;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface BookingRepository extends JpaRepository<Booking, Long> {
+    // Проекция сразу в ответ: бронь, вещь и автор брони одним запросом, без сущностей в контексте.
+    // Та же проекция читает и архив (BookingArchiveRepository)
+    String RESPONSE_SELECT = "SELECT new ru.practicum.shareit.booking.dto.BookingResponseDto(" +
+            "b.id, b.start, b.end, b.status, bk.id, bk.name, bk.email, " +
+            "it.id, it.name, it.description, it.available) ";
 
-    List<Booking> findAllByItemId(Long itemId);
+    String RESPONSE = RESPONSE_SELECT +
+            "FROM Booking AS b " +
+            "JOIN b.booker AS bk " +
+            "JOIN b.item AS it ";
 
-    List<Booking> findAllByItemIn(List<Item> items);
+    // Keyset-условие по (start, id) и порядок выдачи, общие для всех списков бронирований.
+    // Совпадают с индексами IDX_BOOKINGS_BOOKER_START и IDX_BOOKINGS_ITEM_START из schema.sql
+    String KEYSET = " AND (b.start < :cursorStart OR (b.start = :cursorStart AND b.id < :cursorId))" +
+            " ORDER BY b.start DESC, b.id DESC";
 
-    List<Booking> findAllByBookerIdOrderByStartDesc(Long bookerId);
+    // Бронь для изменения: вещь и автор нужны для проверок и ответа, подгружаем их сразу
+    @EntityGraph(Booking.WITH_ITEM_AND_BOOKER)
+    Optional<Booking> findDetailedById(Long id);
 
-    List<Booking> findAllByItemOwnerIdOrderByStartDesc(Long itemOwnerId);
+    // Брони вещей владельца для пакетного одобрения, чужие и несуществующие просто не попадут в выборку
+    @Query("SELECT b.id AS id, it.id AS itemId, b.status AS status, b.start AS start, b.end AS end " +
+            "FROM Booking AS b " +
+            "JOIN b.item AS it " +
+            "WHERE b.id IN :ids AND it.owner.id = :ownerId")
+    List<BookingStateView> findStatesForOwner(Collection<Long> ids, Long ownerId);
+
+    // Одно обновление на набор броней с одинаковым прочитанным статусом. Брони, чей статус успели изменить
+    // параллельно, не трогаем: по числу обновленных строк видно, что пакет устарел
+    @Modifying
+    @Query("UPDATE Booking AS b SET b.status = :status, b.version = b.version + 1 " +
+            "WHERE b.id IN :ids AND b.status = :expected")
+    int updateStatuses(Collection<Long> ids, Status status, Status expected);
+
+    // Смена статуса одной брони, только если с момента чтения ее никто не менял
+    @Modifying
+    @Query("UPDATE Booking AS b SET b.status = :status, b.version = b.version + 1 " +
+            "WHERE b.id = :id AND b.version = :version")
+    int updateStatus(Long id, Status status, Long version);
+
+    // Бронь для просмотра автором или владельцем вещи, остальным ее как бы нет
+    @Query(RESPONSE +
+            "WHERE b.id = :bookingId AND (bk.id = :userId OR it.owner.id = :userId)")
+    Optional<BookingResponseDto> findResponseByIdForUser(Long bookingId, Long userId);
+
+    // Версии для ETag брони, с теми же правами доступа, что и findResponseByIdForUser
+    @Query("SELECT b.version AS version, it.version AS itemVersion, bk.version AS bookerVersion " +
+            "FROM Booking AS b " +
+            "JOIN b.booker AS bk " +
+            "JOIN b.item AS it " +
+            "WHERE b.id = :bookingId AND (bk.id = :userId OR it.owner.id = :userId)")
+    Optional<BookingVersionView> findVersionsByIdForUser(Long bookingId, Long userId);
+
+    // Последняя и следующая неотклоненные брони для каждой вещи из списка. Окно считается по индексу
+    // IDX_BOOKINGS_ITEM_START, поэтому объем работы зависит от числа вещей, а не от всей истории бронирований
+    @Query(value = "SELECT last_booking.ITEM_ID AS itemId, last_booking.ID AS id, " +
+            "last_booking.BOOKER_ID AS bookerId, last_booking.START_TIME AS start, FALSE AS upcoming " +
+            "FROM (SELECT b.ID, b.ITEM_ID, b.BOOKER_ID, b.START_TIME, " +
+            "ROW_NUMBER() OVER (PARTITION BY b.ITEM_ID ORDER BY b.START_TIME DESC, b.ID DESC) AS RN " +
+            "FROM BOOKINGS AS b " +
+            "WHERE b.ITEM_ID IN (:itemIds) AND b.STATUS <> 'REJECTED' AND b.START_TIME <= :now) AS last_booking " +
+            "WHERE last_booking.RN = 1 " +
+            "UNION ALL " +
+            "SELECT next_booking.ITEM_ID, next_booking.ID, next_booking.BOOKER_ID, next_booking.START_TIME, TRUE " +
+            "FROM (SELECT b.ID, b.ITEM_ID, b.BOOKER_ID, b.START_TIME, " +
+            "ROW_NUMBER() OVER (PARTITION BY b.ITEM_ID ORDER BY b.START_TIME ASC, b.ID ASC) AS RN " +
+            "FROM BOOKINGS AS b " +
+            "WHERE b.ITEM_ID IN (:itemIds) AND b.STATUS <> 'REJECTED' AND b.START_TIME > :now) AS next_booking " +
+            "WHERE next_booking.RN = 1", nativeQuery = true)
+    List<ClosestBookingView> findClosestBookings(Collection<Long> itemIds, LocalDateTime now);
+
+    // Бронирования пользователя, по одному запросу на каждый State
+    @Query(RESPONSE +
+            "WHERE bk.id = :bookerId" + KEYSET)
+    List<BookingResponseDto> findAllByBooker(Long bookerId, LocalDateTime cursorStart, Long cursorId, Pageable page);
+
+    @Query(RESPONSE +
+            "WHERE bk.id = :bookerId AND b.start < :now AND b.end > :now" + KEYSET)
+    List<BookingResponseDto> findCurrentByBooker(Long bookerId, LocalDateTime now,
+                                      LocalDateTime cursorStart, Long cursorId, Pageable page);
+
+    @Query(RESPONSE +
+            "WHERE bk.id = :bookerId AND b.end < :now" + KEYSET)
+    List<BookingResponseDto> findPastByBooker(Long bookerId, LocalDateTime now,
+                                   LocalDateTime cursorStart, Long cursorId, Pageable page);
+
+    @Query(RESPONSE +
+            "WHERE bk.id = :bookerId AND b.start > :now" + KEYSET)
+    List<BookingResponseDto> findFutureByBooker(Long bookerId, LocalDateTime now,
+                                     LocalDateTime cursorStart, Long cursorId, Pageable page);
+
+    @Query(RESPONSE +
+            "WHERE bk.id = :bookerId AND b.status = :status" + KEYSET)
+    List<BookingResponseDto> findByBookerAndStatus(Long bookerId, Status status,
+                                        LocalDateTime cursorStart, Long cursorId, Pageable page);
+
+    // Бронирования вещей владельца, по одному запросу на каждый State
+    @Query(RESPONSE +
+            "WHERE it.owner.id = :ownerId" + KEYSET)
+    List<BookingResponseDto> findAllByOwner(Long ownerId, LocalDateTime cursorStart, Long cursorId, Pageable page);
+
+    @Query(RESPONSE +
+            "WHERE it.owner.id = :ownerId AND b.start < :now AND b.end > :now" + KEYSET)
+    List<BookingResponseDto> findCurrentByOwner(Long ownerId, LocalDateTime now,
+                                     LocalDateTime cursorStart, Long cursorId, Pageable page);
+
+    @Query(RESPONSE +
+            "WHERE it.owner.id = :ownerId AND b.end < :now" + KEYSET)
+    List<BookingResponseDto> findPastByOwner(Long ownerId, LocalDateTime now,
+                                  LocalDateTime cursorStart, Long cursorId, Pageable page);
+
+    @Query(RESPONSE +
+            "WHERE it.owner.id = :ownerId AND b.start > :now" + KEYSET)
+    List<BookingResponseDto> findFutureByOwner(Long ownerId, LocalDateTime now,
+                                    LocalDateTime cursorStart, Long cursorId, Pageable page);
+
+    @Query(RESPONSE +
+            "WHERE it.owner.id = :ownerId AND b.status = :status" + KEYSET)
+    List<BookingResponseDto> findByOwnerAndStatus(Long ownerId, Status status,
+                                       LocalDateTime cursorStart, Long cursorId, Pageable page);
+
+    // Интервалы броней вещи для индекса пересечений
+    @Query("SELECT new ru.practicum.shareit.booking.overlap.BookingInterval(b.id, b.start, b.end) " +
+            "FROM Booking AS b " +
+            "WHERE b.item.id = :itemId AND b.status IN :statuses AND b.end > :now")
+    List<BookingInterval> findIntervals(Long itemId, Collection<Status> statuses, LocalDateTime now);
+
+    // Брони вещи, пересекающиеся с [start, end), по IDX_BOOKINGS_ITEM_STATUS_TIME. Проверка индекса пересечений
+    // по базе: брони, записанные другими экземплярами приложения, есть только в ней
+    @Query("SELECT new ru.practicum.shareit.booking.overlap.BookingInterval(b.id, b.start, b.end) " +
+            "FROM Booking AS b " +
+            "WHERE b.item.id = :itemId AND b.status IN :statuses AND b.start < :end AND b.end > :start")
+    List<BookingInterval> findOverlapping(Long itemId, Collection<Status> statuses, LocalDateTime start,
+                                          LocalDateTime end, Pageable page);
+
+    // Интервалы броней сразу нескольких вещей, для загрузки индекса пересечений одним запросом
+    @Query("SELECT b.id AS id, it.id AS itemId, b.status AS status, b.start AS start, b.end AS end " +
+            "FROM Booking AS b " +
+            "JOIN b.item AS it " +
+            "WHERE it.id IN :itemIds AND b.status IN :statuses AND b.end > :now")
+    List<BookingStateView> findActiveStates(Collection<Long> itemIds, Collection<Status> statuses,
+                                            LocalDateTime now);
+
+    // Порция броней для переноса в архив, самые старые первыми, по IDX_BOOKINGS_END. Строки блокируются
+    // до конца транзакции порции, чтобы параллельное изменение статуса не потерялось при копировании
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b.id FROM Booking AS b WHERE b.end < :cutoff ORDER BY b.end, b.id")
+    List<Long> lockEndedBefore(LocalDateTime cutoff, Pageable page);
+
+    @Query("SELECT DISTINCT b.item.id FROM Booking AS b WHERE b.id IN :ids")
+    List<Long> findItemIdsByIds(Collection<Long> ids);
+
+    // Удаляет брони, уже скопированные в архив
+    @Modifying
+    @Query("DELETE FROM Booking AS b WHERE b.id IN :ids")
+    int deleteArchived(Collection<Long> ids);
 
     // Получаем список букингов, которые были у пользователя, с условием, что он пользовался этой вещью
     List<Booking> findAllByBookerIdAndItemIdAndStatusAndEndBefore(Long bookerId, Long itemId,
@@ -1,5 +1,8 @@
 package ru.practicum.shareit.booking.service;
 
+import ru.practicum.shareit.booking.dto.BookingCursor;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingRequestDto;
 import ru.practicum.shareit.booking.dto.BookingResponseDto;
 import ru.practicum.shareit.booking.model.State;
@@ -11,9 +14,13 @@ public interface BookingService {
 
     BookingResponseDto approveBooking(long bookingId, long userId, boolean available);
 
+    List<BookingDecisionResultDto> approveBookings(long userId, List<BookingDecisionDto> decisions);
+
     BookingResponseDto getBooking(long bookingId, long userId);
 
-    List<BookingResponseDto> getBookingByBooker(long userId, State state);
+    String getBookingETag(long bookingId, long userId);
+
+    List<BookingResponseDto> getBookingByBooker(long userId, State state, BookingCursor cursor, int from, int size);
 
-    List<BookingResponseDto> getBookingItemsByOwner(long userId, State state);
+    List<BookingResponseDto> getBookingItemsByOwner(long userId, State state, BookingCursor cursor, int from, int size);
 }
@@ -1,32 +1,73 @@
 package ru.practicum.shareit.booking.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.dto.BookingCursor;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingMapper;
 import ru.practicum.shareit.booking.dto.BookingRequestDto;
 import ru.practicum.shareit.booking.dto.BookingResponseDto;
+import ru.practicum.shareit.booking.dto.BookingStateView;
+import ru.practicum.shareit.booking.dto.BookingVersionView;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.State;
 import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.outbox.BookingOutbox;
+import ru.practicum.shareit.booking.overlap.BookingInterval;
+import ru.practicum.shareit.booking.overlap.BookingOverlapIndex;
+import ru.practicum.shareit.booking.overlap.IntervalTree;
+import ru.practicum.shareit.booking.repository.BookingArchiveRepository;
 import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.common.ETags;
+import ru.practicum.shareit.common.OffsetPageRequest;
 import ru.practicum.shareit.exception.BadRequestException;
+import ru.practicum.shareit.exception.ConflictException;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.repository.ItemRepository;
-import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.item.service.ItemSummaryService;
+import ru.practicum.shareit.user.dto.UserSnapshot;
 import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.user.service.UserCache;
 
+import javax.persistence.EntityManager;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class BookingServiceImpl implements BookingService {
+    // Порядок всех списков бронирований, как в BookingRepository.KEYSET
+    private static final Comparator<BookingResponseDto> NEWEST_FIRST = Comparator
+            .comparing(BookingResponseDto::getStart)
+            .thenComparingLong(BookingResponseDto::getId)
+            .reversed();
+
     private final BookingRepository repository;
+    private final BookingArchiveRepository archiveRepository;
     private final ItemRepository itemRepository;
     private final UserRepository userRepository;
+    private final UserCache userCache;
+    private final BookingOverlapIndex overlapIndex;
+    private final ItemSummaryService summaryService;
+    private final BookingOutbox outbox;
+    private final EntityManager entityManager;
+
+    @Value("${shareit.bookings.approve.max-attempts:3}")
+    private int approveMaxAttempts;
 
     @Override
     @Transactional
@@ -39,21 +80,31 @@ public class BookingServiceImpl implements BookingService {
             throw new BadRequestException("Нельзя забронировать недоступную вещь");
         }
 
-        User user = getUser(userId);
+        UserSnapshot booker = getUser(userId);
 
         if (item.getOwner().getId() == userId) {
             throw new NotFoundException("Зачем хозяину вещи делать запрос на ее бронирование?");
         }
 
-        Booking booking = repository.save(BookingMapper.toBooking(bookingDto, user, item));
+        // Брони одной вещи создаются по очереди, иначе две пересекающиеся могли бы пройти проверку одновременно
+        overlapIndex.lock(item.getId());
+        checkOverlap(item.getId(), bookingDto.getStart(), bookingDto.getEnd());
 
-        return BookingMapper.toBookingResponseDto(booking);
+        // Пользователь уже проверен через кэш, для внешнего ключа хватает ссылки без запроса в базу
+        Booking booking = repository.save(BookingMapper.toBooking(bookingDto,
+                userRepository.getReferenceById(userId), item));
+        summaryService.bookingAdded(booking, LocalDateTime.now());
+        outbox.append(booking);
+
+        return BookingMapper.toBookingResponseDto(booking, booker);
     }
 
+    // Статус меняется условным UPDATE по версии, без блокировки строки. Если бронь успели изменить
+    // между чтением и записью, перечитываем ее и принимаем решение заново, но не больше approveMaxAttempts раз
     @Override
     @Transactional
     public BookingResponseDto approveBooking(long bookingId, long userId, boolean approved) {
-        Booking booking = repository.findById(bookingId).orElseThrow(() -> new NotFoundException("booking"));
+        Booking booking = repository.findDetailedById(bookingId).orElseThrow(() -> new NotFoundException("booking"));
         Item item = booking.getItem();
         getUser(userId);
 
@@ -61,88 +112,301 @@ public class BookingServiceImpl implements BookingService {
             throw new NotFoundException("Редактирование брони не владельцем вещи, поэтому ее как бы нет");
         }
 
-        if (booking.getStatus().equals(Status.APPROVED)) {
-            throw new BadRequestException("Нельзя менять статус брони, после того как ее одобрили");
+        final Status status = approved ? Status.APPROVED : Status.REJECTED;
+
+        for (int attempt = 1; attempt <= approveMaxAttempts; attempt++) {
+            if (attempt > 1) {
+                entityManager.refresh(booking);
+            }
+
+            final Status current = booking.getStatus();
+
+            if (current == Status.APPROVED) {
+                throw new BadRequestException("Нельзя менять статус брони, после того как ее одобрили");
+            }
+
+            // Отклоненная бронь освобождает время, а одобрение отклоненной снова его занимает
+            if (current == Status.WAITING && status == Status.REJECTED) {
+                overlapIndex.lock(item.getId());
+            } else if (current == Status.REJECTED && status == Status.APPROVED) {
+                overlapIndex.lock(item.getId());
+                checkOverlap(item.getId(), booking.getStart(), booking.getEnd());
+            }
+
+            if (repository.updateStatus(bookingId, status, booking.getVersion()) == 0) {
+                continue;
+            }
+
+            // Строка уже обновлена запросом, сущность отцепляем, чтобы Hibernate не записал ее второй раз
+            entityManager.detach(booking);
+            booking.setStatus(status);
+            booking.setVersion(booking.getVersion() + 1);
+
+            // Одобрение ожидающей брони сводку вещи не меняет: в ней и так учтены все неотклоненные брони
+            if (current == Status.WAITING && status == Status.REJECTED) {
+                summaryService.bookingsRejected(List.of(item.getId()), List.of(bookingId));
+            } else if (current == Status.REJECTED && status == Status.APPROVED) {
+                summaryService.bookingAdded(booking, LocalDateTime.now());
+            }
+
+            outbox.append(booking);
+
+            return BookingMapper.toBookingResponseDto(booking);
         }
 
-        booking.setStatus(approved ? Status.APPROVED : Status.REJECTED);
-        repository.save(booking);
-        return BookingMapper.toBookingResponseDto(booking);
+        throw new ConflictException("Бронь id = " + bookingId + " одновременно меняют другие запросы, повторите позже");
     }
 
     @Override
-    @Transactional(readOnly = true)
-    public BookingResponseDto getBooking(long bookingId, long userId) {
-        Booking booking = repository.findById(bookingId).orElseThrow(() -> new NotFoundException("booking"));
+    @Transactional
+    public List<BookingDecisionResultDto> approveBookings(long userId, List<BookingDecisionDto> decisions) {
         getUser(userId);
 
-        if (booking.getBooker().getId() != userId && booking.getItem().getOwner().getId() != userId) {
-            throw new NotFoundException("просмотр брони не ее владельцем или владельцем вещи, для остальных ее нет");
+        // Владение и текущие статусы проверяем одним запросом на весь пакет
+        final Set<Long> ids = decisions.stream().map(BookingDecisionDto::getBookingId).collect(Collectors.toSet());
+        final Map<Long, BookingStateView> bookings = repository.findStatesForOwner(ids, userId).stream()
+                .collect(Collectors.toMap(BookingStateView::getId, Function.identity()));
+
+        // Вещи, чьи интервалы поменяются, блокируем заранее и все сразу
+        overlapIndex.lockAll(bookings.values().stream()
+                .filter(booking -> booking.getStatus() != Status.APPROVED)
+                .map(BookingStateView::getItemId)
+                .collect(Collectors.toSet()));
+        // Брони вещей, где отклоненные брони могут стать одобренными, загружаем одним запросом, а не по вещи.
+        // Одобренные в этом пакете интервалы добавляются в те же деревья, чтобы следующие решения их учитывали
+        final Map<Long, IntervalTree> trees = overlapIndex.loadTrees(decisions.stream()
+                .filter(decision -> Boolean.TRUE.equals(decision.getApproved()))
+                .map(decision -> bookings.get(decision.getBookingId()))
+                .filter(booking -> booking != null && booking.getStatus() == Status.REJECTED)
+                .map(BookingStateView::getItemId)
+                .collect(Collectors.toSet()));
+
+        final List<BookingDecisionResultDto> results = new ArrayList<>(decisions.size());
+        // Новый статус -> прочитанный статус -> брони. Обновление проверяет, что прочитанный статус не изменился
+        final Map<Status, Map<Status, List<Long>>> updates = new EnumMap<>(Status.class);
+        // Вещи и брони, чьи сводки устареют после пакета
+        final Set<Long> rejectedItemIds = new HashSet<>();
+        final Set<Long> rejectedIds = new HashSet<>();
+        final Set<Long> restoredItemIds = new HashSet<>();
+        final Set<Long> seen = new HashSet<>();
+
+        for (BookingDecisionDto decision : decisions) {
+            final Long bookingId = decision.getBookingId();
+            final BookingStateView booking = bookings.get(bookingId);
+            final Status status = decision.getApproved() ? Status.APPROVED : Status.REJECTED;
+
+            if (!seen.add(bookingId)) {
+                results.add(decisionFailed(bookingId, "Повторное решение по той же брони в одном запросе"));
+                continue;
+            }
+
+            if (booking == null) {
+                results.add(decisionFailed(bookingId, "Бронь не найдена среди броней вещей пользователя"));
+                continue;
+            }
+
+            if (booking.getStatus() == Status.APPROVED) {
+                results.add(decisionFailed(bookingId, "Нельзя менять статус брони, после того как ее одобрили"));
+                continue;
+            }
+
+            if (booking.getStatus() == Status.WAITING && status == Status.REJECTED) {
+                rejectedItemIds.add(booking.getItemId());
+                rejectedIds.add(bookingId);
+            } else if (booking.getStatus() == Status.REJECTED && status == Status.APPROVED) {
+                final IntervalTree tree = trees.get(booking.getItemId());
+                final BookingInterval overlap = tree.findOverlap(booking.getStart(), booking.getEnd());
+
+                if (overlap != null) {
+                    results.add(decisionFailed(bookingId, "Вещь уже забронирована на это время, бронь id = " +
+                            overlap.getId()));
+                    continue;
+                }
+
+                tree.add(new BookingInterval(bookingId, booking.getStart(), booking.getEnd()));
+                restoredItemIds.add(booking.getItemId());
+            }
+
+            updates.computeIfAbsent(status, key -> new EnumMap<>(Status.class))
+                    .computeIfAbsent(booking.getStatus(), key -> new ArrayList<>()).add(bookingId);
+            results.add(BookingDecisionResultDto.builder().bookingId(bookingId).status(status).build());
+        }
+
+        for (Map.Entry<Status, Map<Status, List<Long>>> target : updates.entrySet()) {
+            for (Map.Entry<Status, List<Long>> update : target.getValue().entrySet()) {
+                int updated = repository.updateStatuses(update.getValue(), target.getKey(), update.getKey());
+
+                // Кто-то успел изменить бронь из пакета: откатываем весь пакет, клиент повторит его с новыми статусами
+                if (updated != update.getValue().size()) {
+                    throw new ConflictException("Статусы броней изменились во время пакетного одобрения");
+                }
+            }
+        }
+
+        summaryService.bookingsRejected(rejectedItemIds, rejectedIds);
+        summaryService.bookingsRestored(restoredItemIds);
+
+        // События последними: BookingOutbox держит общую блокировку до коммита
+        for (Map.Entry<Status, Map<Status, List<Long>>> target : updates.entrySet()) {
+            outbox.appendAll(target.getValue().values().stream()
+                    .flatMap(List::stream)
+                    .collect(Collectors.toList()), target.getKey());
         }
 
-        return BookingMapper.toBookingResponseDto(booking);
+        return results;
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<BookingResponseDto> getBookingByBooker(long userId, State state) {
-        // Проверяем существует ли пользователь
+    public BookingResponseDto getBooking(long bookingId, long userId) {
         getUser(userId);
 
-        List<Booking> bookings = repository.findAllByBookerIdOrderByStartDesc(userId);
-
-        return filterBookingsByState(bookings, state);
+        // Просмотр брони не ее владельцем или владельцем вещи: для остальных ее нет.
+        // Архив читаем, только если брони нет в BOOKINGS
+        return repository.findResponseByIdForUser(bookingId, userId)
+                .or(() -> archiveRepository.findResponseByIdForUser(bookingId, userId))
+                .orElseThrow(() -> new NotFoundException("booking"));
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<BookingResponseDto> getBookingItemsByOwner(long userId, State state) {
+    public String getBookingETag(long bookingId, long userId) {
         getUser(userId);
 
-        List<Booking> bookings = repository.findAllByItemOwnerIdOrderByStartDesc(userId);
+        // В ответе есть вещь и автор брони, поэтому их версии входят в ETag наравне с версией самой брони
+        BookingVersionView versions = repository.findVersionsByIdForUser(bookingId, userId)
+                .or(() -> archiveRepository.findVersionsByIdForUser(bookingId, userId))
+                .orElseThrow(() -> new NotFoundException("booking"));
 
-        return filterBookingsByState(bookings, state);
+        return ETags.of(bookingId, versions.getVersion(), versions.getItemVersion(), versions.getBookerVersion());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookingResponseDto> getBookingByBooker(long userId, State state, BookingCursor cursor,
+                                                       int from, int size) {
+        // Проверяем существует ли пользователь
+        getUser(userId);
 
-    private List<BookingResponseDto> filterBookingsByState(List<Booking> bookings, State state) {
-        LocalDateTime now = LocalDateTime.now();
-
-        List<BookingResponseDto> response = bookings
-                .stream()
-                .map(BookingMapper::toBookingResponseDto)
-                .collect(Collectors.toList());
+        final LocalDateTime now = LocalDateTime.now();
+        final BookingCursor position = cursor == null ? BookingCursor.FIRST : cursor;
+        final LocalDateTime cursorStart = position.getStart();
+        final Long cursorId = position.getId();
+        // При переданном курсоре смещение уже задано им самим
+        final Pageable page = OffsetPageRequest.of(cursor == null ? from : 0, size);
+        // Глубина чтения каждой из таблиц для списков, которые сливаются с архивом. Без size она не ограничена
+        final Pageable depth = OffsetPageRequest.of(0, (int) Math.min(page.getOffset() + size, Integer.MAX_VALUE));
+        List<BookingResponseDto> bookings;
 
         switch (state) {
             case ALL:
-                return response;
+                bookings = mergeWithArchive(repository.findAllByBooker(userId, cursorStart, cursorId, depth),
+                        archiveRepository.findAllByBooker(userId, cursorStart, cursorId, depth), page);
+                break;
+            case CURRENT:
+                bookings = repository.findCurrentByBooker(userId, now, cursorStart, cursorId, page);
+                break;
             case PAST:
-                return response.stream()
-                        .filter(booking -> booking.getEnd().isBefore(now)).collect(Collectors.toList());
+                bookings = mergeWithArchive(repository.findPastByBooker(userId, now, cursorStart, cursorId, depth),
+                        archiveRepository.findAllByBooker(userId, cursorStart, cursorId, depth), page);
+                break;
             case FUTURE:
-                return response.stream()
-                        .filter(booking -> booking.getStart().isAfter(now)).collect(Collectors.toList());
-            case CURRENT:
-                return response.stream()
-                        .filter(booking -> booking.getStart().isBefore(now) && booking.getEnd().isAfter(now))
-                        .collect(Collectors.toList());
+                bookings = repository.findFutureByBooker(userId, now, cursorStart, cursorId, page);
+                break;
             case WAITING:
-                return response.stream().filter(booking -> booking.getStatus().equals(Status.WAITING))
-                        .collect(Collectors.toList());
+                bookings = repository.findByBookerAndStatus(userId, Status.WAITING, cursorStart, cursorId, page);
+                break;
             case REJECTED:
-                return response.stream().filter(booking -> booking.getStatus().equals(Status.REJECTED))
-                        .collect(Collectors.toList());
+                bookings = repository.findByBookerAndStatus(userId, Status.REJECTED, cursorStart, cursorId, page);
+                break;
             default:
                 // У нас тут тесты резко захотели проверять сообщение об ошибке, будем выкручиваться
                 throw new IllegalArgumentException("Unknown state: " + state);
         }
+
+        return bookings;
     }
 
-    private User getUser(long userId) {
-        return userRepository.findById(userId)
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookingResponseDto> getBookingItemsByOwner(long userId, State state, BookingCursor cursor,
+                                                           int from, int size) {
+        getUser(userId);
+
+        final LocalDateTime now = LocalDateTime.now();
+        final BookingCursor position = cursor == null ? BookingCursor.FIRST : cursor;
+        final LocalDateTime cursorStart = position.getStart();
+        final Long cursorId = position.getId();
+        final Pageable page = OffsetPageRequest.of(cursor == null ? from : 0, size);
+        final Pageable depth = OffsetPageRequest.of(0, (int) Math.min(page.getOffset() + size, Integer.MAX_VALUE));
+        List<BookingResponseDto> bookings;
+
+        switch (state) {
+            case ALL:
+                bookings = mergeWithArchive(repository.findAllByOwner(userId, cursorStart, cursorId, depth),
+                        archiveRepository.findAllByOwner(userId, cursorStart, cursorId, depth), page);
+                break;
+            case CURRENT:
+                bookings = repository.findCurrentByOwner(userId, now, cursorStart, cursorId, page);
+                break;
+            case PAST:
+                bookings = mergeWithArchive(repository.findPastByOwner(userId, now, cursorStart, cursorId, depth),
+                        archiveRepository.findAllByOwner(userId, cursorStart, cursorId, depth), page);
+                break;
+            case FUTURE:
+                bookings = repository.findFutureByOwner(userId, now, cursorStart, cursorId, page);
+                break;
+            case WAITING:
+                bookings = repository.findByOwnerAndStatus(userId, Status.WAITING, cursorStart, cursorId, page);
+                break;
+            case REJECTED:
+                bookings = repository.findByOwnerAndStatus(userId, Status.REJECTED, cursorStart, cursorId, page);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown state: " + state);
+        }
+
+        return bookings;
+    }
+
+    // Старые брони PAST и ALL лежат в архиве (BookingArchiver). Обе таблицы прочитаны с одного курсора на глубину
+    // страницы, тут они сливаются в общем порядке. BOOKINGS читается первой: бронь, перенесенная в архив между
+    // двумя запросами, придет дважды и отсеется по id, а не пропадет
+    private static List<BookingResponseDto> mergeWithArchive(List<BookingResponseDto> hot,
+                                                             List<BookingResponseDto> archived, Pageable page) {
+        if (archived.isEmpty()) {
+            return hot.stream().skip(page.getOffset()).limit(page.getPageSize()).collect(Collectors.toList());
+        }
+
+        final Map<Long, BookingResponseDto> bookings = new HashMap<>();
+        hot.forEach(booking -> bookings.put(booking.getId(), booking));
+        archived.forEach(booking -> bookings.putIfAbsent(booking.getId(), booking));
+
+        return bookings.values().stream()
+                .sorted(NEWEST_FIRST)
+                .skip(page.getOffset())
+                .limit(page.getPageSize())
+                .collect(Collectors.toList());
+    }
+
+    private UserSnapshot getUser(long userId) {
+        return userCache.find(userId)
                 .orElseThrow(() -> new NotFoundException("user"));
     }
 
+    private void checkOverlap(long itemId, LocalDateTime start, LocalDateTime end) {
+        BookingInterval overlap = overlapIndex.findOverlap(itemId, start, end);
+
+        if (overlap != null) {
+            throw new ConflictException("Вещь id = " + itemId + " уже забронирована на это время, бронь id = " +
+                    overlap.getId());
+        }
+    }
+
+    private static BookingDecisionResultDto decisionFailed(long bookingId, String error) {
+        return BookingDecisionResultDto.builder().bookingId(bookingId).error(error).build();
+    }
+
     private Item getItem(long itemId) {
         return itemRepository.findById(itemId)
                 .orElseThrow(() -> new NotFoundException("item"));
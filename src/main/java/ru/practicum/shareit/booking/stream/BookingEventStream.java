@@ -0,0 +1,313 @@
+package ru.practicum.shareit.booking.stream;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.shareit.booking.dto.BookingMapper;
+import ru.practicum.shareit.booking.model.BookingEvent;
+import ru.practicum.shareit.booking.outbox.BookingEventConsumer;
+import ru.practicum.shareit.booking.outbox.BookingOutbox;
+import ru.practicum.shareit.booking.repository.BookingEventRepository;
+import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.exception.ServiceOverloadedException;
+import ru.practicum.shareit.user.service.UserCache;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Поток событий броней по SSE (/bookings/stream) для автора брони и владельца вещи вместо опроса.
+ * События приходят из исходящей очереди через BookingOutboxDispatcher, одна выборка на всех подписчиков.
+ *
+ * У каждого подписчика своя ограниченная очередь. Отправку ведет общий пул, так что медленный клиент
+ * не задерживает раздачу остальным. Переполненную очередь не копим: поток закрывается, клиент переподключается
+ * с Last-Event-ID и дочитывает пропущенное из BOOKING_EVENTS. Так же, порцией, отдается история при возобновлении.
+ */
+@Component
+@Slf4j
+public class BookingEventStream implements BookingEventConsumer {
+    private final BookingEventRepository repository;
+    private final BookingOutbox outbox;
+    private final UserCache userCache;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxConnections;
+    private final int bufferSize;
+    private final Duration timeout;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final ExecutorService senders;
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "booking-stream-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BookingEventStream(BookingEventRepository repository,
+                              BookingOutbox outbox,
+                              UserCache userCache,
+                              TransactionTemplate transactionTemplate,
+                              @Value("${shareit.bookings.stream.max-connections:1000}") int maxConnections,
+                              @Value("${shareit.bookings.stream.buffer-size:100}") int bufferSize,
+                              @Value("${shareit.bookings.stream.timeout:PT30M}") Duration timeout,
+                              @Value("${shareit.bookings.stream.heartbeat:PT15S}") Duration heartbeat,
+                              @Value("${shareit.bookings.stream.sender-threads:4}") int senderThreads) {
+        this.repository = repository;
+        this.outbox = outbox;
+        this.userCache = userCache;
+        this.transactionTemplate = transactionTemplate;
+        this.maxConnections = maxConnections;
+        this.bufferSize = bufferSize;
+        this.timeout = timeout;
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "booking-stream-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeat.toMillis(), heartbeat.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    // Новый поток пользователя. lastEventId - последнее событие, которое клиент уже получил, или null
+    public SseEmitter subscribe(long userId, Long lastEventId) {
+        if (userCache.find(userId).isEmpty()) {
+            throw new NotFoundException("user");
+        }
+
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            throw new ServiceOverloadedException("Слишком много открытых потоков событий броней");
+        }
+
+        final Subscriber subscriber = new Subscriber(userId, new SseEmitter(timeout.toMillis()));
+        subscriber.emitter.onCompletion(() -> unsubscribe(subscriber));
+        subscriber.emitter.onTimeout(() -> unsubscribe(subscriber));
+        subscriber.emitter.onError(error -> unsubscribe(subscriber));
+
+        // Подписываемся до чтения истории, чтобы не потерять события между ними. Повторы отсекает Subscriber
+        subscribers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+
+        if (lastEventId == null) {
+            subscriber.replayed(List.of());
+            return subscriber.emitter;
+        }
+
+        // С основной базы: событие, которого еще нет на реплике, клиент бы потерял. Только до committedUpTo:
+        // более позднее событие отсекло бы как повтор еще не закоммиченное с меньшим id
+        List<BookingEvent> history = transactionTemplate.execute(status -> repository.findForUser(userId,
+                lastEventId, outbox.committedUpTo(), PageRequest.of(0, bufferSize)));
+        subscriber.replayed(history);
+
+        // Клиент отстал больше чем на буфер: отдаем порцию и закрываем, следующую он заберет при переподключении
+        if (history != null && history.size() == bufferSize) {
+            subscriber.closeAfterDrain();
+        }
+
+        return subscriber.emitter;
+    }
+
+    @Override
+    public String getName() {
+        return "sse-stream";
+    }
+
+    // Подписчики у каждого экземпляра свои, и после перезапуска их нет: старые события отдавать некому,
+    // а чекпоинт хранится в памяти экземпляра
+    @Override
+    public boolean startsFromLatest() {
+        return true;
+    }
+
+    @Override
+    public void consume(List<BookingEvent> events) {
+        for (BookingEvent event : events) {
+            deliver(event.getBookerId(), event);
+
+            if (!event.getOwnerId().equals(event.getBookerId())) {
+                deliver(event.getOwnerId(), event);
+            }
+        }
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    // Закрывает все потоки, клиенты переподключатся к другому экземпляру
+    @PreDestroy
+    public void closeAll() {
+        subscribers.values().forEach(users -> users.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    private void deliver(long userId, BookingEvent event) {
+        Set<Subscriber> userSubscribers = subscribers.get(userId);
+
+        if (userSubscribers != null) {
+            userSubscribers.forEach(subscriber -> subscriber.offer(event));
+        }
+    }
+
+    private void heartbeat() {
+        subscribers.values().forEach(users -> users.forEach(Subscriber::heartbeat));
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (!subscriber.unsubscribed.compareAndSet(false, true)) {
+            return;
+        }
+
+        connections.decrementAndGet();
+        subscribers.computeIfPresent(subscriber.userId, (id, users) -> {
+            users.remove(subscriber);
+            return users.isEmpty() ? null : users;
+        });
+    }
+
+    private static SseEmitter.SseEventBuilder toSseEvent(BookingEvent event) {
+        return SseEmitter.event()
+                .id(String.valueOf(event.getId()))
+                .name(event.getType().name())
+                .data(BookingMapper.toBookingEventDto(event), MediaType.APPLICATION_JSON);
+    }
+
+    private final class Subscriber {
+        private final long userId;
+        private final SseEmitter emitter;
+        private final AtomicBoolean unsubscribed = new AtomicBoolean();
+        // Очередь и состояние меняются только под блокировкой подписчика
+        private final Queue<SseEmitter.SseEventBuilder> queue = new ArrayDeque<>();
+        // События, пришедшие, пока читается история
+        private List<BookingEvent> pending = new ArrayList<>();
+        private long lastQueuedId;
+        private boolean draining;
+        private boolean closing;
+        private boolean closed;
+
+        private Subscriber(long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        private synchronized void replayed(List<BookingEvent> history) {
+            final List<BookingEvent> live = pending;
+            pending = null;
+
+            if (history != null) {
+                history.forEach(this::enqueue);
+            }
+
+            live.forEach(this::enqueue);
+            scheduleDrain();
+        }
+
+        private synchronized void offer(BookingEvent event) {
+            if (closed || closing) {
+                return;
+            }
+
+            if (pending != null) {
+                if (pending.size() < bufferSize) {
+                    pending.add(event);
+                } else {
+                    overflow();
+                }
+                return;
+            }
+
+            enqueue(event);
+            scheduleDrain();
+        }
+
+        private synchronized void heartbeat() {
+            if (!closed && pending == null && queue.size() < bufferSize) {
+                queue.add(SseEmitter.event().comment("heartbeat"));
+                scheduleDrain();
+            }
+        }
+
+        private synchronized void closeAfterDrain() {
+            closing = true;
+            scheduleDrain();
+        }
+
+        private void enqueue(BookingEvent event) {
+            // Событие уже отдано из истории или пришло повторно при доставке не реже одного раза
+            if (closed || event.getId() <= lastQueuedId) {
+                return;
+            }
+
+            if (queue.size() >= bufferSize) {
+                overflow();
+                return;
+            }
+
+            queue.add(toSseEvent(event));
+            lastQueuedId = event.getId();
+        }
+
+        private void overflow() {
+            log.debug("Поток событий пользователя {} не успевает, закрываем его", userId);
+            closed = true;
+            queue.clear();
+            emitter.complete();
+        }
+
+        private void scheduleDrain() {
+            if (!draining && !closed) {
+                draining = true;
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                SseEmitter.SseEventBuilder next;
+
+                synchronized (this) {
+                    next = closed ? null : queue.poll();
+
+                    if (next == null) {
+                        draining = false;
+
+                        if (closing && !closed) {
+                            closed = true;
+                            emitter.complete();
+                        }
+                        return;
+                    }
+                }
+
+                try {
+                    emitter.send(next);
+                } catch (IOException | IllegalStateException e) {
+                    synchronized (this) {
+                        closed = true;
+                        draining = false;
+                        queue.clear();
+                    }
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package ru.practicum.shareit.common;
+
+// Группы эндпоинтов со своими пулами потоков и соединений, настройки - shareit.bulkheads.groups.<группа>
+public enum BulkheadGroup {
+    SEARCH,
+    ITEM_READS,
+    ITEM_WRITES,
+    BOOKING_READS,
+    BOOKING_WRITES,
+    USER_ADMIN
+}
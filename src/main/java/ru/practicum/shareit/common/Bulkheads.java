@@ -0,0 +1,117 @@
+package ru.practicum.shareit.common;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.config.BulkheadProperties;
+import ru.practicum.shareit.exception.ServiceOverloadedException;
+
+import javax.annotation.PreDestroy;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+ * Переборки между группами эндпоинтов: у каждой группы свой ограниченный пул потоков с очередью
+ * и свой лимит одновременно занятых соединений с базой. Поток Tomcat только ставит запрос в очередь группы,
+ * поэтому всплеск поиска занимает потоки и соединения поиска, но не бронирований.
+ * Переполненная очередь или отсутствие свободного соединения сразу дают 503, а не ожидание.
+ *
+ * Метрики: executor.* с тегом name=bulkhead.<группа> (очередь, активные потоки, время задач),
+ * bulkhead.rejections по группе и причине, bulkhead.connections.available по группе.
+ */
+@Component
+public class Bulkheads {
+    private final Map<BulkheadGroup, Bulkhead> bulkheads = new EnumMap<>(BulkheadGroup.class);
+
+    public Bulkheads(BulkheadProperties properties, MeterRegistry registry) {
+        for (BulkheadGroup group : BulkheadGroup.values()) {
+            BulkheadProperties.Group settings = properties.getGroups().get(group);
+
+            if (settings == null) {
+                throw new IllegalStateException("Не настроена группа shareit.bulkheads.groups." + name(group));
+            }
+
+            bulkheads.put(group, new Bulkhead(name(group), settings, registry));
+        }
+    }
+
+    // Выполняет action в пуле группы, держа одно из ее соединений. Ошибки action завершают future
+    public <T> CompletableFuture<T> supply(BulkheadGroup group, Supplier<T> action) {
+        Bulkhead bulkhead = bulkheads.get(group);
+
+        try {
+            Supplier<T> task = RequestContext.wrap(() -> bulkhead.withPermit(action));
+            return CompletableFuture.supplyAsync(task, bulkhead.executor);
+        } catch (RejectedExecutionException e) {
+            bulkhead.queueRejections.increment();
+            throw new ServiceOverloadedException("Очередь группы " + bulkhead.name + " заполнена");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bulkheads.values().forEach(bulkhead -> bulkhead.executor.shutdown());
+    }
+
+    private static String name(BulkheadGroup group) {
+        return group.name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    private static final class Bulkhead {
+        private final String name;
+        private final ExecutorService executor;
+        private final Semaphore connections;
+        private final long permitTimeoutNanos;
+        private final Counter queueRejections;
+        private final Counter connectionRejections;
+
+        private Bulkhead(String name, BulkheadProperties.Group settings, MeterRegistry registry) {
+            this.name = name;
+            this.connections = new Semaphore(settings.getConnections());
+            this.permitTimeoutNanos = settings.getPermitTimeout().toNanos();
+
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(settings.getThreads(), settings.getThreads(),
+                    0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(settings.getQueueCapacity()),
+                    new CustomizableThreadFactory("bulkhead-" + name + "-"), new ThreadPoolExecutor.AbortPolicy());
+            this.executor = ExecutorServiceMetrics.monitor(registry, pool, "bulkhead." + name);
+
+            Tags tags = Tags.of("group", name);
+            this.queueRejections = registry.counter("bulkhead.rejections", tags.and("reason", "queue"));
+            this.connectionRejections = registry.counter("bulkhead.rejections", tags.and("reason", "connections"));
+            Gauge.builder("bulkhead.connections.available", connections, Semaphore::availablePermits)
+                    .tags(tags)
+                    .register(registry);
+        }
+
+        private <T> T withPermit(Supplier<T> action) {
+            try {
+                if (!connections.tryAcquire(permitTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                    connectionRejections.increment();
+                    throw new ServiceOverloadedException("Нет свободных соединений у группы " + name);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServiceOverloadedException("Группа " + name + " останавливается");
+            }
+
+            try {
+                return action.get();
+            } finally {
+                connections.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.practicum.shareit.common;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// Сильные ETag из версий строк и условные GET по If-None-Match
+public final class ETags {
+    private ETags() {
+
+    }
+
+    public static String of(Object... parts) {
+        return Arrays.stream(parts)
+                .map(String::valueOf)
+                .collect(Collectors.joining("-", "\"", "\""));
+    }
+
+    // Ответ 304, если у клиента уже эта версия, иначе тело. Тело собирается только во втором случае.
+    // ETag считается до тела: если данные успеют измениться между ними, клиент получит новое тело со старым ETag
+    // и просто перезапросит его в следующий раз, а наоборот - старое тело с новым ETag - не бывает.
+    // etag null - версия неизвестна, тело отдается без ETag
+    public static <T> ResponseEntity<T> conditional(String ifNoneMatch, String etag, Supplier<T> body) {
+        // Ответы зависят от X-Sharer-User-Id, общим кэшам их хранить нельзя, а клиент должен проверять версию
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+
+        if (etag == null) {
+            return ResponseEntity.ok().cacheControl(cacheControl).body(body.get());
+        }
+
+        if (matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(body.get());
+    }
+
+    // If-None-Match сравнивается слабо: W/"x" совпадает с "x"
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+
+            if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,111 @@
+package ru.practicum.shareit.common;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Тело ответа - JSON-массив, элементы которого пишутся в ответ по мере чтения из базы, а не собираются в список.
+// Клиенту, который просит application/x-ndjson, те же элементы уходят по одному на строку
+public final class JsonArrayStreaming {
+    private JsonArrayStreaming() {
+
+    }
+
+    // Формат выбирается по заголовку Accept, тип содержимого ответа выставляется сразу
+    public static <T> StreamingResponseBody of(ObjectMapper objectMapper, String accept, HttpServletResponse response,
+                                               Consumer<Consumer<T>> source) {
+        if (prefersNdjson(accept)) {
+            response.setContentType(NdjsonHttpMessageConverter.NDJSON_VALUE);
+            return ndjson(objectMapper, source);
+        }
+
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        return of(objectMapper, source);
+    }
+
+    public static <T> StreamingResponseBody of(ObjectMapper objectMapper, Consumer<Consumer<T>> source) {
+        return out -> {
+            // Массив открывается только с первым элементом, а генератор закрывается только при успехе:
+            // если source упадет на проверках до первого элемента, ответ еще не отправлен (закрытие сбросило бы
+            // заголовки) и ошибка уйдет в ErrorHandler с нормальным статусом
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            source.accept(element -> {
+                try {
+                    if (!generator.getOutputContext().inArray()) {
+                        generator.writeStartArray();
+                    }
+
+                    generator.writeObject(element);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            if (!generator.getOutputContext().inArray()) {
+                generator.writeStartArray();
+            }
+
+            generator.writeEndArray();
+            generator.close();
+        };
+    }
+
+    public static <T> StreamingResponseBody ndjson(ObjectMapper objectMapper, Consumer<Consumer<T>> source) {
+        return out -> {
+            // Как и у массива, генератор закрывается только при успехе
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            source.accept(element -> {
+                try {
+                    generator.writeObject(element);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            if (generator.getOutputContext().getEntryCount() > 0) {
+                generator.writeRaw('\n');
+            }
+
+            generator.close();
+        };
+    }
+
+    // Первый по предпочтению тип из Accept: NDJSON или JSON (в том числе */*). Без заголовка - JSON
+    private static boolean prefersNdjson(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return false;
+        }
+
+        List<MediaType> types;
+
+        try {
+            types = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+
+        MediaType.sortBySpecificityAndQuality(types);
+
+        for (MediaType type : types) {
+            if (type.equalsTypeAndSubtype(NdjsonHttpMessageConverter.NDJSON)) {
+                return true;
+            }
+
+            if (type.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,76 @@
+package ru.practicum.shareit.common;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+
+// Ответ в NDJSON: по JSON-объекту на строку. Список пишется поэлементно, без общего массива, и клиент разбирает
+// строки по мере получения. Любой другой ответ, в том числе ошибка из ErrorHandler, - одна строка.
+// Только запись: массовая загрузка вещей читает NDJSON из тела сама
+public class NdjsonHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+    public static final MediaType NDJSON = MediaType.parseMediaType(NDJSON_VALUE);
+
+    private final ObjectMapper objectMapper;
+
+    public NdjsonHttpMessageConverter(ObjectMapper objectMapper) {
+        super(NDJSON);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return true;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("NDJSON принимается только массовой загрузкой", inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("NDJSON принимается только массовой загрузкой", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        final Collection<?> elements = object instanceof Collection ? (Collection<?>) object : List.of(object);
+
+        // Тело ответа закрывает контейнер, генератор только сбрасывает в него свой буфер
+        try (JsonGenerator generator = objectMapper.getFactory()
+                .createGenerator(StreamUtils.nonClosing(outputMessage.getBody()))) {
+            // По умолчанию Jackson разделяет корневые значения пробелом
+            generator.setRootValueSeparator(new SerializedString("\n"));
+
+            for (Object element : elements) {
+                generator.writeObject(element);
+            }
+
+            if (!elements.isEmpty()) {
+                generator.writeRaw('\n');
+            }
+        }
+    }
+}
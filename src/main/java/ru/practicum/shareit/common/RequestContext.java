@@ -0,0 +1,60 @@
+package ru.practicum.shareit.common;
+
+import java.util.function.Supplier;
+
+/*
+ * Контекст текущего HTTP-запроса: пользователь из X-Sharer-User-Id и реплика, выбранная для его чтений.
+ * Заполняется RequestUserFilter в потоке Tomcat и переносится в пулы переборок вместе с задачей,
+ * так что маршрутизация соединений видит его и там, где запрос на самом деле выполняется.
+ */
+public final class RequestContext {
+    private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+
+    private final Long userId;
+    // Все чтения одного запроса идут в одну реплику: иначе ETag и тело ответа могли бы прийти с разным отставанием
+    private volatile Object replica;
+
+    public RequestContext(Long userId) {
+        this.userId = userId;
+    }
+
+    public static RequestContext current() {
+        return CURRENT.get();
+    }
+
+    public static void set(RequestContext context) {
+        if (context == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(context);
+        }
+    }
+
+    // Оборачивает задачу так, чтобы в чужом потоке она выполнялась с контекстом вызывающего
+    public static <T> Supplier<T> wrap(Supplier<T> action) {
+        final RequestContext captured = current();
+
+        return () -> {
+            final RequestContext previous = current();
+            set(captured);
+
+            try {
+                return action.get();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Object getReplica() {
+        return replica;
+    }
+
+    public void setReplica(Object replica) {
+        this.replica = replica;
+    }
+}
@@ -0,0 +1,40 @@
+package ru.practicum.shareit.common;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+@Component
+public class RequestUserFilter extends OncePerRequestFilter {
+    private static final String USER_ID_HEADER = "X-Sharer-User-Id";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestContext.set(new RequestContext(parseUserId(request.getHeader(USER_ID_HEADER))));
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestContext.set(null);
+        }
+    }
+
+    // Некорректный заголовок здесь не ошибка: его отклонит сам эндпоинт, а контекст просто останется без пользователя
+    private static Long parseUserId(String header) {
+        if (header == null) {
+            return null;
+        }
+
+        try {
+            return Long.valueOf(header.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package ru.practicum.shareit.common;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Сколько SQL-запросов может выполнить обработчик за один HTTP-запрос при любом объеме данных.
+// Проверяется тестом SqlBudgetTest, обработчик без бюджета тест тоже не пропустит.
+// Для потоковых выгрузок и массовой загрузки бюджет задан на одну порцию
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface SqlBudget {
+    int value();
+}
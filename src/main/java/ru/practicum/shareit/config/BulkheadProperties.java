@@ -0,0 +1,25 @@
+package ru.practicum.shareit.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import ru.practicum.shareit.common.BulkheadGroup;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties("shareit.bulkheads")
+public class BulkheadProperties {
+    private Map<BulkheadGroup, Group> groups = new EnumMap<>(BulkheadGroup.class);
+
+    @Data
+    public static class Group {
+        // Потоки, которые выполняют запросы группы, и очередь перед ними
+        private int threads;
+        private int queueCapacity;
+        // Сколько соединений пула группа может занимать одновременно и сколько ждать свободного
+        private int connections;
+        private Duration permitTimeout = Duration.ofMillis(100);
+    }
+}
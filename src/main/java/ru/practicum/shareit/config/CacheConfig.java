@@ -0,0 +1,30 @@
+package ru.practicum.shareit.config;
+
+import com.github.benmanes.caffeine.cache.CaffeineSpec;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableCaching
+@EnableConfigurationProperties(CacheProperties.class)
+public class CacheConfig {
+    // Размер, TTL и сбор статистики задаются в spring.cache.caffeine.spec.
+    // Кэши оборачиваются в TransactionAware: сброс записи происходит только после коммита транзакции,
+    // иначе параллельный запрос успеет положить в кэш еще не измененного пользователя
+    @Bean
+    public CacheManager cacheManager(CacheProperties properties) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCaffeineSpec(CaffeineSpec.parse(properties.getCaffeine().getSpec()));
+        cacheManager.setCacheNames(properties.getCacheNames());
+        // Отсутствующих пользователей не кэшируем, новый пользователь должен быть виден сразу
+        cacheManager.setAllowNullValues(false);
+
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
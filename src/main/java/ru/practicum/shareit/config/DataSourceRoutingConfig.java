@@ -0,0 +1,64 @@
+package ru.practicum.shareit.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// Включается, только если задана хотя бы одна реплика, иначе остается обычный DataSource из spring.datasource
+@Configuration
+@ConditionalOnProperty("shareit.datasource.replicas[0].jdbc-url")
+@EnableConfigurationProperties(DataSourceRoutingProperties.class)
+public class DataSourceRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReadWriteRoutingDataSource routingDataSource(HikariDataSource primaryDataSource,
+                                                        DataSourceRoutingProperties properties) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+
+        for (int i = 0; i < properties.getReplicas().size(); i++) {
+            HikariConfig config = properties.getReplicas().get(i);
+
+            if (config.getPoolName() == null) {
+                config.setPoolName("replica-" + i);
+            }
+            config.setReadOnly(true);
+            replicas.add(new HikariDataSource(config));
+        }
+
+        return new ReadWriteRoutingDataSource(primaryDataSource, replicas, properties.getReadYourWritesWindow());
+    }
+
+    // Пулы реплик не бины, поэтому метрики hikaricp.* для них подключаем сами, как Boot делает для пулов-бинов
+    @Bean
+    public MeterBinder replicaPoolMetrics(ReadWriteRoutingDataSource routingDataSource) {
+        return registry -> routingDataSource.getReplicas()
+                .forEach(replica -> replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
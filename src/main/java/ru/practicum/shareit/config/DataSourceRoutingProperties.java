@@ -0,0 +1,18 @@
+package ru.practicum.shareit.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties("shareit.datasource")
+public class DataSourceRoutingProperties {
+    // Пулы реплик только для чтения, настройки как у spring.datasource.hikari: jdbc-url, username, password и т.д.
+    private List<HikariConfig> replicas = new ArrayList<>();
+    // Сколько после своей записи пользователь читает из основной базы, пока реплики ее догоняют. 0 - не читает
+    private Duration readYourWritesWindow = Duration.ZERO;
+}
@@ -0,0 +1,106 @@
+package ru.practicum.shareit.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.common.RequestContext;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Транзакции readOnly получают соединение реплики, все остальное - основной базы.
+ * Реплика выбирается по кругу один раз на HTTP-запрос. Пользователь, который недавно что-то записал,
+ * в течение окна read-your-writes читает из основной базы, чтобы не увидеть данные до своей же записи.
+ *
+ * Ключ определяется при получении физического соединения, поэтому перед этим источником должен стоять
+ * LazyConnectionDataSourceProxy: иначе Hibernate возьмет соединение раньше, чем станет известен флаг readOnly.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+    private static final String PRIMARY = "primary";
+
+    private final List<HikariDataSource> replicas;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    // null, если окно read-your-writes выключено
+    private final Cache<Long, Boolean> recentWriters;
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<HikariDataSource> replicas,
+                                      Duration readYourWritesWindow) {
+        this.replicas = replicas;
+        this.recentWriters = readYourWritesWindow.isZero() ? null : Caffeine.newBuilder()
+                .expireAfterWrite(readYourWritesWindow)
+                .build();
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        final RequestContext context = RequestContext.current();
+
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            rememberWriter(context);
+            return PRIMARY;
+        }
+
+        if (context == null) {
+            return nextReplica();
+        }
+
+        if (recentWriters != null && context.getUserId() != null
+                && recentWriters.getIfPresent(context.getUserId()) != null) {
+            return PRIMARY;
+        }
+
+        if (context.getReplica() == null) {
+            context.setReplica(nextReplica());
+        }
+
+        return context.getReplica();
+    }
+
+    public List<HikariDataSource> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(HikariDataSource::close);
+    }
+
+    private Object nextReplica() {
+        return Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+    }
+
+    // Окно отсчитывается от коммита: до него реплики запись и не могли увидеть
+    private void rememberWriter(RequestContext context) {
+        if (recentWriters == null || context == null || context.getUserId() == null
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        final Long userId = context.getUserId();
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recentWriters.put(userId, Boolean.TRUE);
+            }
+        });
+    }
+}
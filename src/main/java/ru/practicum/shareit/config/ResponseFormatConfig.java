@@ -0,0 +1,42 @@
+package ru.practicum.shareit.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.practicum.shareit.common.NdjsonHttpMessageConverter;
+
+import java.util.List;
+
+/*
+ * Форматы ответов помимо JSON, по заголовку Accept:
+ * application/x-jackson-smile - двоичный JSON. Повторяющиеся имена полей и короткие строки (имена, почта, статусы)
+ * пишутся ссылкой на первое вхождение, поэтому вложенные автор и вещь в каждой брони почти ничего не стоят;
+ * application/x-ndjson - по объекту на строку, список пишется поэлементно.
+ *
+ * Конвертеры добавляются в конец списка: при Accept с любым типом или без заголовка выбирается первый подходящий,
+ * то есть JSON.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class ResponseFormatConfig implements WebMvcConfigurer {
+    private final ObjectMapper objectMapper;
+    private final Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Стандартный Smile-конвертер Spring собирает свой ObjectMapper без настроек spring.jackson.*
+        converters.removeIf(converter -> converter instanceof MappingJackson2SmileHttpMessageConverter);
+
+        SmileFactory smile = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        converters.add(new MappingJackson2SmileHttpMessageConverter(objectMapperBuilder.factory(smile).build()));
+        converters.add(new NdjsonHttpMessageConverter(objectMapper));
+    }
+}
@@ -0,0 +1,12 @@
+package ru.practicum.shareit.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Фоновые задачи (@Scheduled). В тестах выключены: они бы добавляли свои запросы к подсчитанным тестом
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "shareit.scheduling.enabled", matchIfMissing = true)
+public class SchedulingConfig {
+}
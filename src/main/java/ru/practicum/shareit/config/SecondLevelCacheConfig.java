@@ -0,0 +1,58 @@
+package ru.practicum.shareit.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/*
+ * Кэш второго уровня Hibernate: JCache поверх Caffeine, по локальному ограниченному кэшу на регион.
+ * Caffeine JCache читает настройки только из общего application.conf, поэтому регионы создаются здесь
+ * из shareit.second-level-cache.regions, а готовый CacheManager передается Hibernate.
+ * Попадания и промахи видны в метриках hibernate.second.level.cache.requests и hibernate.cache.query.requests.
+ *
+ * Кэш не распределенный: READ_WRITE согласует записи только внутри экземпляра. Изменения других экземпляров
+ * становятся видны, когда запись истечет по expire-after-write региона, поэтому он задан у всех регионов с данными.
+ */
+@Configuration
+@EnableConfigurationProperties(SecondLevelCacheProperties.class)
+public class SecondLevelCacheConfig {
+
+    // Свой URI на каждый контекст: CachingProvider кэширует менеджеры, а регионы в них создаются по одному разу
+    @Bean
+    public CacheManager hibernateCacheManager(SecondLevelCacheProperties properties) {
+        CaffeineCachingProvider provider = (CaffeineCachingProvider) Caching.getCachingProvider(
+                CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(URI.create("shareit-hibernate-" + UUID.randomUUID()),
+                getClass().getClassLoader());
+
+        properties.getRegions().forEach((name, region) -> {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setMaximumSize(OptionalLong.of(region.getMaximumSize()));
+            if (region.getExpireAfterWrite() != null) {
+                configuration.setExpireAfterWrite(OptionalLong.of(region.getExpireAfterWrite().toNanos()));
+            }
+            // Hibernate сам хранит в регионах неизменяемые разобранные записи, копировать их незачем
+            configuration.setStoreByValue(false);
+            configuration.setStatisticsEnabled(true);
+
+            cacheManager.createCache(name, configuration);
+        });
+
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.shareit.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties("shareit.second-level-cache")
+public class SecondLevelCacheProperties {
+    // Регионы кэша второго уровня Hibernate по именам. Регион, которого здесь нет, Hibernate создать не даст
+    private Map<String, Region> regions = new HashMap<>();
+
+    @Data
+    public static class Region {
+        private long maximumSize = 10_000;
+        // null - записи живут, пока их не вытеснят по размеру или не изменят
+        private Duration expireAfterWrite;
+    }
+}
@@ -2,6 +2,7 @@ package ru.practicum.shareit.exception;
 
 import lombok.extern.slf4j.Slf4j;
 import org.h2.jdbc.JdbcSQLIntegrityConstraintViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingRequestHeaderException;
@@ -41,6 +42,23 @@ public class ErrorHandler {
         return new ErrorResponse(message, e.getMessage());
     }
 
+    // Оптимистичная блокировка по @Version: запись опоздала, клиент может перечитать данные и повторить
+    @ExceptionHandler({ConflictException.class, OptimisticLockingFailureException.class})
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ErrorResponse stateConflictHandler(final Exception e) {
+        final String message = "Конфликт с текущим состоянием ";
+        log.error(message + e.getMessage());
+        return new ErrorResponse(message, e.getMessage());
+    }
+
+    @ExceptionHandler(ServiceOverloadedException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorResponse overloadedHandler(final Exception e) {
+        final String message = "Сервис перегружен, повторите запрос позже ";
+        log.warn(message + e.getMessage());
+        return new ErrorResponse(message, e.getMessage());
+    }
+
     @ExceptionHandler(AccessDeniedException.class)
     @ResponseStatus(HttpStatus.FORBIDDEN)
     public ErrorResponse forbiddenHandler(final Exception e) {
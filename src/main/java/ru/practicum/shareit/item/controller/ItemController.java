@@ -1,66 +1,160 @@
 package ru.practicum.shareit.item.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.shareit.common.BulkheadGroup;
+import ru.practicum.shareit.common.Bulkheads;
+import ru.practicum.shareit.common.ETags;
+import ru.practicum.shareit.common.JsonArrayStreaming;
+import ru.practicum.shareit.common.NdjsonHttpMessageConverter;
+import ru.practicum.shareit.common.SqlBudget;
 import ru.practicum.shareit.item.dto.comment.CommentRequestDto;
 import ru.practicum.shareit.item.dto.comment.CommentResponseDto;
+import ru.practicum.shareit.item.dto.item.ItemImportResultDto;
 import ru.practicum.shareit.item.dto.item.ItemRequestDto;
 import ru.practicum.shareit.item.dto.item.ItemResponseDto;
 import ru.practicum.shareit.item.service.ItemService;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/items")
 @RequiredArgsConstructor
 @Slf4j
-public final class ItemController {
+@Validated
+public class ItemController {
 
     private final ItemService itemService;
+    private final ObjectMapper objectMapper;
+    private final Bulkheads bulkheads;
     private static final String SHARER_USER_ID = "X-Sharer-User-Id";
+    private static final String DEFAULT_PAGE_SIZE = "20";
+    private static final String NDJSON = NdjsonHttpMessageConverter.NDJSON_VALUE;
 
+    @SqlBudget(4)
     @PostMapping
-    public ItemResponseDto postItem(@Valid @RequestBody ItemRequestDto itemDto,
-                                    @RequestHeader(value = SHARER_USER_ID) long userId) {
+    public CompletableFuture<ItemResponseDto> postItem(@Valid @RequestBody ItemRequestDto itemDto,
+                                                       @RequestHeader(value = SHARER_USER_ID) long userId) {
         log.info("postItem");
-        return itemService.addItem(itemDto, userId);
+        return bulkheads.supply(BulkheadGroup.ITEM_WRITES, () -> itemService.addItem(itemDto, userId));
     }
 
+    // Массовая загрузка: по одной вещи в формате ItemRequestDto на строку, тело читается потоком.
+    // Бюджет на каждые 50 вещей: столько же в JDBC-пакете вставки и в пачке id из ITEMS_SEQ. Сводки вещей - второй пакет
+    @SqlBudget(4)
+    @PostMapping(value = "/bulk", consumes = NDJSON, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ItemImportResultDto postItemsBulk(@RequestHeader(SHARER_USER_ID) long userId,
+                                             InputStream body) throws IOException {
+        log.info("postItemsBulk");
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            return itemService.importItems(lines, userId);
+        }
+    }
+
+    @SqlBudget(3)
     @PatchMapping("/{itemId}")
-    public ItemResponseDto patchItem(@RequestBody ItemRequestDto itemDto, @RequestHeader(SHARER_USER_ID) long userId,
-                                     @PathVariable long itemId) {
+    public CompletableFuture<ItemResponseDto> patchItem(@RequestBody ItemRequestDto itemDto,
+                                                        @RequestHeader(SHARER_USER_ID) long userId,
+                                                        @PathVariable long itemId) {
         log.info("patchItem");
-        return itemService.updateItem(itemDto, userId, itemId);
+        return bulkheads.supply(BulkheadGroup.ITEM_WRITES, () -> itemService.updateItem(itemDto, userId, itemId));
     }
 
+    // Если у клиента актуальная версия, отвечаем 304 после одного запроса версии, не собирая ответ
+    @SqlBudget(5)
     @GetMapping("/{itemId}")
-    public ItemResponseDto getItemById(@RequestHeader(SHARER_USER_ID) long userId,
-                                       @PathVariable long itemId) {
+    public CompletableFuture<ResponseEntity<ItemResponseDto>> getItemById(
+            @RequestHeader(SHARER_USER_ID) long userId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @PathVariable long itemId) {
         log.info("getItemById");
-        return itemService.getItemById(itemId, userId);
+        return bulkheads.supply(BulkheadGroup.ITEM_READS, () -> ETags.conditional(ifNoneMatch,
+                itemService.getItemETag(itemId, userId), () -> itemService.getItemById(itemId, userId)));
     }
 
+    // Вещи со сводками одним запросом. Брони догружаются только для устаревших сводок, комментарии - для вещей с ними
+    @SqlBudget(4)
     @GetMapping
-    public List<ItemResponseDto> getItems(@RequestHeader("X-Sharer-User-Id") long userId) {
+    public CompletableFuture<List<ItemResponseDto>> getItems(
+            @RequestHeader("X-Sharer-User-Id") long userId,
+            @RequestParam(defaultValue = "0") @PositiveOrZero int from,
+            @RequestParam(required = false) @Positive Integer size) {
         log.info("getItems");
-        return itemService.getItems(userId);
+        int limit = pageSize(size);
+        return bulkheads.supply(BulkheadGroup.ITEM_READS, () -> itemService.getItems(userId, from, limit));
+    }
+
+    // Выгрузка всех вещей владельца потоком, память не зависит от их числа. JSON-массив или NDJSON по Accept.
+    // Без ResponseEntity: тот сразу отправляет заголовки, и ошибка проверки пользователя уже не сменила бы статус.
+    // Бюджет на порцию из shareit.items.export.chunk-size вещей
+    @SqlBudget(4)
+    @GetMapping("/export")
+    public StreamingResponseBody exportItems(@RequestHeader(SHARER_USER_ID) long userId,
+                                             @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                             HttpServletResponse response) {
+        log.info("exportItems");
+        return JsonArrayStreaming.<ItemResponseDto>of(objectMapper, accept, response,
+                consumer -> itemService.exportItems(userId, consumer));
     }
 
+    @SqlBudget(1)
     @GetMapping("/search")
-    public List<ItemResponseDto> getItemsSearch(@RequestParam(defaultValue = "") String text) {
+    public CompletableFuture<List<ItemResponseDto>> getItemsSearch(
+            @RequestParam(defaultValue = "") String text,
+            @RequestParam(defaultValue = "0") @PositiveOrZero int from,
+            @RequestParam(required = false) @Positive Integer size) {
         log.info("getItemsSearch");
-        return itemService.getItemsSearch(text);
+        int limit = pageSize(size);
+        return bulkheads.supply(BulkheadGroup.SEARCH, () -> itemService.getItemsSearch(text, from, limit));
     }
 
+    // Вещи, свободные в [from, to). Параметр from здесь занят под время, поэтому смещение страницы - offset
+    @SqlBudget(1)
+    @GetMapping("/available")
+    public CompletableFuture<List<ItemResponseDto>> getItemsAvailable(
+            @RequestParam(defaultValue = "") String text,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "0") @PositiveOrZero int offset,
+            @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) @Positive int size) {
+        log.info("getItemsAvailable");
+        return bulkheads.supply(BulkheadGroup.SEARCH,
+                () -> itemService.getItemsAvailable(text, from, to, offset, size));
+    }
+
+    @SqlBudget(5)
     @PostMapping("/{itemId}/comment")
-    public CommentResponseDto createComment(
+    public CompletableFuture<CommentResponseDto> createComment(
             @RequestBody @Valid CommentRequestDto commentDto,
             @PathVariable Long itemId,
             @RequestHeader(SHARER_USER_ID) Long userId) {
 
         log.info("createComment");
-        return itemService.createComment(commentDto, userId, itemId);
+        return bulkheads.supply(BulkheadGroup.ITEM_WRITES,
+                () -> itemService.createComment(commentDto, userId, itemId));
+    }
+
+    // Без size список отдается целиком, как и до постраничного вывода
+    private static int pageSize(Integer size) {
+        return size == null ? Integer.MAX_VALUE : size;
     }
-}
\ No newline at end of file
+}
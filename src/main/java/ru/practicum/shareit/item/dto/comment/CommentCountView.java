@@ -0,0 +1,8 @@
+package ru.practicum.shareit.item.dto.comment;
+
+// Число комментариев вещи, для пересчета сводок
+public interface CommentCountView {
+    Long getItemId();
+
+    Long getCommentCount();
+}
@@ -2,6 +2,7 @@ package ru.practicum.shareit.item.dto.comment;
 
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.dto.UserSnapshot;
 import ru.practicum.shareit.user.model.User;
 
 import java.time.LocalDateTime;
@@ -28,4 +29,22 @@ public final class CommentMapper {
                 .created(comment.getCreated())
                 .build();
     }
+
+    public static CommentResponseDto toCommentDto(Comment comment, UserSnapshot author) {
+        return CommentResponseDto.builder()
+                .id(comment.getId())
+                .text(comment.getText())
+                .authorName(author.getName())
+                .created(comment.getCreated())
+                .build();
+    }
+
+    public static CommentResponseDto toCommentDto(CommentView comment) {
+        return CommentResponseDto.builder()
+                .id(comment.getId())
+                .text(comment.getText())
+                .authorName(comment.getAuthorName())
+                .created(comment.getCreated())
+                .build();
+    }
 }
@@ -0,0 +1,16 @@
+package ru.practicum.shareit.item.dto.comment;
+
+import java.time.LocalDateTime;
+
+// Проекция комментария вместе с именем автора и вещью, к которой он относится
+public interface CommentView {
+    Long getItemId();
+
+    Long getId();
+
+    String getText();
+
+    String getAuthorName();
+
+    LocalDateTime getCreated();
+}
@@ -0,0 +1,12 @@
+package ru.practicum.shareit.item.dto.item;
+
+import lombok.Builder;
+import lombok.Data;
+
+// Ошибка в строке NDJSON при массовой загрузке вещей, строки нумеруются с единицы
+@Data
+@Builder
+public class ItemImportErrorDto {
+    private long line;
+    private String error;
+}
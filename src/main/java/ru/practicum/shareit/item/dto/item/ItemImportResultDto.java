@@ -0,0 +1,15 @@
+package ru.practicum.shareit.item.dto.item;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+// Итог массовой загрузки: ошибки перечисляются не все, а только первые, их общее число - в failed
+@Data
+@Builder
+public class ItemImportResultDto {
+    private long imported;
+    private long failed;
+    private List<ItemImportErrorDto> errors;
+}
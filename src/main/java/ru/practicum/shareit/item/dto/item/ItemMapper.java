@@ -3,6 +3,7 @@ package ru.practicum.shareit.item.dto.item;
 import ru.practicum.shareit.booking.dto.BookingShortResponseDto;
 import ru.practicum.shareit.item.dto.comment.CommentResponseDto;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.search.ItemSearchDocument;
 import ru.practicum.shareit.user.model.User;
 
 import java.util.List;
@@ -22,6 +23,25 @@ public final class ItemMapper {
                 .build();
     }
 
+    // метод для вещи внутри бронирования
+    public static ItemShortResponseDto toItemShortDto(Item item) {
+        return ItemShortResponseDto.builder()
+                .id(item.getId())
+                .name(item.getName())
+                .description(item.getDescription())
+                .available(item.getAvailable())
+                .build();
+    }
+
+    public static ItemResponseDto toItemDto(ItemSearchDocument document) {
+        return ItemResponseDto.builder()
+                .id(document.getId())
+                .name(document.getName())
+                .description(document.getDescription())
+                .available(document.getAvailable())
+                .build();
+    }
+
     // Метод для возврата для получения вещи с комментариями и букингами
     public static ItemResponseDto toItemResponseDto(Item item, BookingShortResponseDto last,
                                                     BookingShortResponseDto next, List<CommentResponseDto> comments) {
@@ -36,9 +56,8 @@ public final class ItemMapper {
                 .build();
     }
 
-    public static Item toItem(ItemRequestDto itemDto, long itemId, User user) {
+    public static Item toItem(ItemRequestDto itemDto, User user) {
         return Item.builder()
-                .id(itemId)
                 .owner(user)
                 .name(itemDto.getName())
                 .description(itemDto.getDescription())
@@ -49,6 +68,7 @@ public final class ItemMapper {
     public static Item toUpdatedItem(Item item, ItemRequestDto itemDto) {
         return Item.builder()
                 .id(item.getId())
+                .version(item.getVersion())
                 .owner(item.getOwner())
                 .name(itemDto.getName() == null ? item.getName() : itemDto.getName())
                 .description(itemDto.getDescription() == null ? item.getDescription() : itemDto.getDescription())
@@ -0,0 +1,19 @@
+package ru.practicum.shareit.item.dto.item;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+// Дто вещи внутри бронирования, без владельца, бронирований и комментариев
+@Data
+@Builder
+@AllArgsConstructor
+public class ItemShortResponseDto {
+    private Long id;
+
+    private String name;
+
+    private String description;
+
+    private Boolean available;
+}
@@ -0,0 +1,18 @@
+package ru.practicum.shareit.item.dto.item;
+
+import java.time.LocalDateTime;
+
+// Все, от чего зависит ответ GET /items/{id}, без сборки самого ответа: для ETag и If-None-Match
+public interface ItemVersionView {
+    Long getOwnerId();
+
+    Long getVersion();
+
+    // Версии из сводки вещи (ItemSummary), null - сводки у вещи еще нет
+    Long getBookingsVersion();
+
+    Long getCommentsVersion();
+
+    // Начало ближайшей будущей неотклоненной брони: когда оно наступит, у владельца сменятся last/nextBooking
+    LocalDateTime getNextStart();
+}
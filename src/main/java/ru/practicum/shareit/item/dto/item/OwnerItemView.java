@@ -0,0 +1,11 @@
+package ru.practicum.shareit.item.dto.item;
+
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.model.ItemSummary;
+
+// Вещь владельца вместе со своей сводкой. Сводки может еще не быть, тогда null
+public interface OwnerItemView {
+    Item getItem();
+
+    ItemSummary getSummary();
+}
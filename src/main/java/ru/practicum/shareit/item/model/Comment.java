@@ -4,6 +4,9 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import ru.practicum.shareit.user.model.User;
 
 import javax.persistence.*;
@@ -15,17 +18,25 @@ import java.time.LocalDateTime;
 @Builder
 @Entity
 @Table(name = "COMMENTS")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Comment.CACHE_REGION)
 public class Comment {
+    public static final String CACHE_REGION = "comments";
+    // Регион кэша запросов для комментариев вещи
+    public static final String BY_ITEM_QUERY_REGION = "comments-by-item";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     @Column(name = "COMMENT")
     private String text;
     private LocalDateTime created;
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "ITEM_ID", referencedColumnName = "ID")
+    @ToString.Exclude
     private Item item;
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "USER_ID", referencedColumnName = "ID")
+    @ToString.Exclude
     private User user;
 }
@@ -4,6 +4,9 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import ru.practicum.shareit.user.model.User;
 
 import javax.persistence.*;
@@ -12,11 +15,17 @@ import javax.persistence.*;
 @Builder
 @Table(name = "ITEMS")
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Item.CACHE_REGION)
 @NoArgsConstructor
 @AllArgsConstructor
 public class Item {
+    public static final String CACHE_REGION = "items";
+
+    // Id из последовательности с шагом 50 (pooled): Hibernate берет их пачкой и может вставлять вещи JDBC-батчами
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "items_seq")
+    @SequenceGenerator(name = "items_seq", sequenceName = "ITEMS_SEQ", allocationSize = 50)
     private Long id;
 
     @Column
@@ -27,7 +36,12 @@ public class Item {
     @Column
     private Boolean available;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "OWNER", referencedColumnName = "id")
+    @ToString.Exclude
     private User owner;
+
+    // Версия только самой строки вещи. ETag ответа по вещи учитывает еще версии ее броней и комментариев
+    @Version
+    private Long version;
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package ru.practicum.shareit.item.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+// Готовая сводка по вещи для списка вещей владельца: последняя и следующая неотклоненные брони и число комментариев.
+// Поддерживается ItemSummaryService при записи броней и комментариев
+@Data
+@Builder
+@Table(name = "ITEM_SUMMARY")
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+public class ItemSummary {
+    @Id
+    private Long itemId;
+
+    private Long lastBookingId;
+
+    private Long lastBookerId;
+
+    private LocalDateTime lastStart;
+
+    private Long nextBookingId;
+
+    private Long nextBookerId;
+
+    private LocalDateTime nextStart;
+
+    private Long commentCount;
+
+    // Когда брони в сводке перестанут быть верными: начало следующей брони, а у устаревшей сводки - момент
+    // в прошлом. null - пока не появится новая бронь, сводка не меняется
+    private LocalDateTime refreshAt;
+
+    // Версии броней и комментариев вещи для ETag карточки (ItemServiceImpl.getItemETag). Растут при каждом
+    // изменении ближайших броней и комментариев, в том числе имени автора. Истории броней ETag не читает
+    private Long bookingsVersion;
+
+    private Long commentsVersion;
+
+    public boolean isFreshAt(LocalDateTime now) {
+        return refreshAt == null || refreshAt.isAfter(now);
+    }
+}
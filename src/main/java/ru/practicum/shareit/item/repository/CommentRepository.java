@@ -1,10 +1,47 @@
 package ru.practicum.shareit.item.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import ru.practicum.shareit.item.dto.comment.CommentCountView;
+import ru.practicum.shareit.item.dto.comment.CommentView;
 import ru.practicum.shareit.item.model.Comment;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
+
 public interface CommentRepository extends JpaRepository<Comment, Long> {
+    // Автор нужен для ответа, поэтому забираем его тем же запросом. Результат в кэше запросов: там только id
+    // комментариев, сами комментарии и авторы берутся из кэша сущностей. Любая запись в COMMENTS или USERS
+    // через Hibernate сбрасывает закэшированные результаты
+    @EntityGraph(attributePaths = "user")
+    @QueryHints({
+        @QueryHint(name = HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HINT_CACHE_REGION, value = Comment.BY_ITEM_QUERY_REGION)
+    })
     List<Comment> findAllByItemId(Long itemId);
+
+    // Не больше limit самых свежих комментариев на каждую вещь из списка, по индексу IDX_COMMENTS_ITEM_CREATED
+    @Query(value = "SELECT ranked.ITEM_ID AS itemId, ranked.ID AS id, ranked.COMMENT AS text, " +
+            "ranked.NAME AS authorName, ranked.CREATED AS created " +
+            "FROM (SELECT c.ID, c.ITEM_ID, c.COMMENT, c.CREATED, u.NAME, " +
+            "ROW_NUMBER() OVER (PARTITION BY c.ITEM_ID ORDER BY c.CREATED DESC, c.ID DESC) AS RN " +
+            "FROM COMMENTS AS c " +
+            "JOIN USERS AS u ON u.ID = c.USER_ID " +
+            "WHERE c.ITEM_ID IN (:itemIds)) AS ranked " +
+            "WHERE ranked.RN <= :limit " +
+            "ORDER BY ranked.ITEM_ID, ranked.CREATED DESC, ranked.ID DESC", nativeQuery = true)
+    List<CommentView> findLatestByItemIds(Collection<Long> itemIds, int limit);
+
+    // Число комментариев каждой вещи из списка, вещи без комментариев в выборку не попадут
+    @Query("SELECT c.item.id AS itemId, COUNT(c) AS commentCount " +
+            "FROM Comment AS c " +
+            "WHERE c.item.id IN :itemIds " +
+            "GROUP BY c.item.id")
+    List<CommentCountView> countByItemIds(Collection<Long> itemIds);
 }
@@ -1,19 +1,82 @@
 package ru.practicum.shareit.item.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.item.dto.item.ItemVersionView;
+import ru.practicum.shareit.item.dto.item.OwnerItemView;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.search.ItemSearchDocument;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 public interface ItemRepository extends JpaRepository<Item, Long> {
+    String OWNER_ITEMS = "SELECT it AS item, s AS summary " +
+            "FROM Item AS it " +
+            "LEFT JOIN ItemSummary AS s ON s.itemId = it.id " +
+            "WHERE it.owner.id = :ownerId " +
+            "ORDER BY it.id";
+
+    // Страница вещей владельца вместе со сводками: один проход по IDX_ITEMS_OWNER и поиск сводки по ключу
+    @Query(OWNER_ITEMS)
+    List<OwnerItemView> findOwnerItems(Long ownerId, Pageable page);
 
-    List<Item> findAllByOwnerId(Long ownerId);
+    // Для выгрузки: строки приходят из курсора порциями по fetch size, а не одним списком
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(OWNER_ITEMS)
+    Stream<OwnerItemView> streamOwnerItems(Long ownerId);
 
     @Query("SELECT it " +
             "FROM Item AS it " +
             "WHERE (LOWER(it.name) LIKE LOWER(CONCAT('%', ?1, '%'))" +
             "OR LOWER(it.description) LIKE LOWER(CONCAT('%', ?1, '%')))" +
-            "AND it.available = TRUE")
-    List<Item> getItemsSearch(String text);
+            "AND it.available = TRUE " +
+            "ORDER BY it.id")
+    List<Item> getItemsSearch(String text, Pageable page);
+
+    // Доступные вещи без одобренных броней, пересекающихся с [from, to). Анти-join по брони идет
+    // по индексу IDX_BOOKINGS_ITEM_STATUS_TIME и не читает саму таблицу BOOKINGS
+    @Query("SELECT it " +
+            "FROM Item AS it " +
+            "WHERE it.available = TRUE " +
+            "AND (:text = '' OR LOWER(it.name) LIKE LOWER(CONCAT('%', :text, '%')) " +
+            "OR LOWER(it.description) LIKE LOWER(CONCAT('%', :text, '%'))) " +
+            "AND NOT EXISTS (SELECT b.id FROM Booking AS b " +
+            "WHERE b.item = it AND b.status = :status AND b.start < :to AND b.end > :from) " +
+            "ORDER BY it.id")
+    List<Item> findAvailableBetween(String text, LocalDateTime from, LocalDateTime to, Status status, Pageable page);
+
+    // Версии всего, что входит в ответ по вещи, одним запросом. Версии броней и комментариев ведет сводка вещи,
+    // а не сама вещь: ее строка и запись в кэше второго уровня при новых бронях и комментариях не меняются.
+    // Из броней читаются только будущие, по IDX_BOOKINGS_ITEM_START
+    @Query("SELECT it.owner.id AS ownerId, it.version AS version, " +
+            "s.bookingsVersion AS bookingsVersion, s.commentsVersion AS commentsVersion, " +
+            "(SELECT MIN(b.start) FROM Booking AS b " +
+            "WHERE b.item = it AND b.status <> :rejected AND b.start > :now) AS nextStart " +
+            "FROM Item AS it " +
+            "LEFT JOIN ItemSummary AS s ON s.itemId = it.id " +
+            "WHERE it.id = :itemId")
+    Optional<ItemVersionView> findVersionById(Long itemId, Status rejected, LocalDateTime now);
+
+    // Снимки вещей для построения поискового индекса, порциями по возрастанию id
+    @Query("SELECT new ru.practicum.shareit.item.search.ItemSearchDocument(" +
+            "it.id, it.owner.id, it.name, it.description, it.available) " +
+            "FROM Item AS it " +
+            "WHERE it.id > :afterId " +
+            "ORDER BY it.id")
+    List<ItemSearchDocument> findSearchDocuments(long afterId, Pageable page);
+
+    // Строки вещей по возрастанию id, до коммита. Ими индекс пересечений броней упорядочивает запись броней
+    // одной вещи между экземплярами приложения
+    @Query(value = "SELECT ID FROM ITEMS WHERE ID IN (:itemIds) ORDER BY ID FOR UPDATE", nativeQuery = true)
+    List<Long> lockByIds(Collection<Long> itemIds);
 }
@@ -0,0 +1,93 @@
+package ru.practicum.shareit.item.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.practicum.shareit.item.model.ItemSummary;
+
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+// Все изменения сводки - условные UPDATE одной строки: параллельные записи упорядочивает блокировка строки,
+// а условие проверяется уже по последней версии. Устаревшие сводки (refreshAt в прошлом) не правятся, их пересчитают.
+// UPDATE, не подошедший под условие, строку не блокирует, поэтому условным записям предшествует безусловная
+// запись версии броней. Строки нескольких сводок блокируются по возрастанию id, как и при пересчете
+public interface ItemSummaryRepository extends JpaRepository<ItemSummary, Long> {
+
+    // Бронь становится следующей, если начнется раньше нынешней следующей. Порядок как в findClosestBookings
+    @Modifying
+    @Query("UPDATE ItemSummary AS s " +
+            "SET s.nextBookingId = :bookingId, s.nextBookerId = :bookerId, s.nextStart = :start, s.refreshAt = :start " +
+            "WHERE s.itemId = :itemId AND (s.refreshAt IS NULL OR s.refreshAt > :now) " +
+            "AND (s.nextStart IS NULL OR s.nextStart > :start " +
+            "OR (s.nextStart = :start AND s.nextBookingId > :bookingId))")
+    int offerNext(Long itemId, Long bookingId, Long bookerId, LocalDateTime start, LocalDateTime now);
+
+    // Уже начавшаяся бронь становится последней, если началась позже нынешней последней
+    @Modifying
+    @Query("UPDATE ItemSummary AS s " +
+            "SET s.lastBookingId = :bookingId, s.lastBookerId = :bookerId, s.lastStart = :start " +
+            "WHERE s.itemId = :itemId AND (s.refreshAt IS NULL OR s.refreshAt > :now) " +
+            "AND (s.lastStart IS NULL OR s.lastStart < :start " +
+            "OR (s.lastStart = :start AND s.lastBookingId < :bookingId))")
+    int offerLast(Long itemId, Long bookingId, Long bookerId, LocalDateTime start, LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE ItemSummary AS s SET s.bookingsVersion = s.bookingsVersion + 1 WHERE s.itemId IN :itemIds")
+    int incrementBookingsVersion(Collection<Long> itemIds);
+
+    // Отклоненная бронь была последней или следующей: какая бронь займет ее место, знает только пересчет
+    @Modifying
+    @Query("UPDATE ItemSummary AS s SET s.bookingsVersion = s.bookingsVersion + 1, " +
+            "s.refreshAt = CASE WHEN s.lastBookingId IN :bookingIds OR s.nextBookingId IN :bookingIds " +
+            "THEN :now ELSE s.refreshAt END " +
+            "WHERE s.itemId IN :itemIds")
+    int invalidateByBookings(Collection<Long> itemIds, Collection<Long> bookingIds, LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE ItemSummary AS s SET s.bookingsVersion = s.bookingsVersion + 1, s.refreshAt = :now " +
+            "WHERE s.itemId IN :itemIds")
+    int invalidate(Collection<Long> itemIds, LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE ItemSummary AS s SET s.commentCount = s.commentCount + 1, " +
+            "s.commentsVersion = s.commentsVersion + 1 WHERE s.itemId = :itemId")
+    int incrementCommentCount(Long itemId);
+
+    // Имя автора показывается в комментариях
+    @Modifying
+    @Query("UPDATE ItemSummary AS s SET s.commentsVersion = s.commentsVersion + 1 WHERE s.itemId IN :itemIds")
+    int incrementCommentsVersion(Collection<Long> itemIds);
+
+    // Сводки для вещей, появившихся до ITEM_SUMMARY. Сразу устаревшие: брони в них заполнит пересчет
+    @Modifying
+    @Query(value = "INSERT INTO ITEM_SUMMARY (ITEM_ID, COMMENT_COUNT, REFRESH_AT) " +
+            "SELECT it.ID, (SELECT COUNT(*) FROM COMMENTS AS c WHERE c.ITEM_ID = it.ID), :now " +
+            "FROM ITEMS AS it " +
+            "WHERE NOT EXISTS (SELECT 1 FROM ITEM_SUMMARY AS s WHERE s.ITEM_ID = it.ID)", nativeQuery = true)
+    int insertMissing(LocalDateTime now);
+
+    // Сводки к пересчету, по индексу IDX_ITEM_SUMMARY_REFRESH_AT
+    @Query("SELECT s.itemId FROM ItemSummary AS s WHERE s.refreshAt <= :now ORDER BY s.refreshAt")
+    List<Long> findDueItemIds(LocalDateTime now, Pageable page);
+
+    // Пересчет держит строки сводок до коммита, чтобы не затереть брони, записанные параллельно
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ItemSummary AS s WHERE s.itemId IN :itemIds ORDER BY s.itemId")
+    List<ItemSummary> lockAllByItemIds(Collection<Long> itemIds);
+
+    // Строки сводок нескольких вещей по возрастанию id, до коммита
+    @Query(value = "SELECT ITEM_ID FROM ITEM_SUMMARY WHERE ITEM_ID IN (:itemIds) ORDER BY ITEM_ID FOR UPDATE",
+            nativeQuery = true)
+    List<Long> lockByItemIds(Collection<Long> itemIds);
+
+    // Сводки вещей, которые комментировал пользователь, по IDX_COMMENTS_USER
+    @Query(value = "SELECT ITEM_ID FROM ITEM_SUMMARY " +
+            "WHERE ITEM_ID IN (SELECT c.ITEM_ID FROM COMMENTS AS c WHERE c.USER_ID = :userId) " +
+            "ORDER BY ITEM_ID FOR UPDATE", nativeQuery = true)
+    List<Long> lockByCommentAuthor(Long userId);
+}
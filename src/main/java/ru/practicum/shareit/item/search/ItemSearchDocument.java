@@ -0,0 +1,28 @@
+package ru.practicum.shareit.item.search;
+
+import lombok.Getter;
+
+import java.util.Locale;
+
+// Снимок вещи в поисковом индексе: исходные поля для ответа и текст в нижнем регистре для сравнения
+@Getter
+public class ItemSearchDocument {
+    private final Long id;
+    private final Long ownerId;
+    private final String name;
+    private final String description;
+    private final Boolean available;
+
+    private final String lowerName;
+    private final String lowerDescription;
+
+    public ItemSearchDocument(Long id, Long ownerId, String name, String description, Boolean available) {
+        this.id = id;
+        this.ownerId = ownerId;
+        this.name = name;
+        this.description = description;
+        this.available = available;
+        this.lowerName = name.toLowerCase(Locale.ROOT);
+        this.lowerDescription = description.toLowerCase(Locale.ROOT);
+    }
+}
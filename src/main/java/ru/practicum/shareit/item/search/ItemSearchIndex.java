@@ -0,0 +1,367 @@
+package ru.practicum.shareit.item.search;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/*
+ * Инвертированный индекс для поиска вещей по подстроке в названии и описании.
+ * Документы разбиваются на токены (токен -> вещи), а словарь токенов - на триграммы (триграмма -> токены).
+ * Поиск по подстроке находит токены словаря, содержащие самое избирательное слово запроса, берет их вещи
+ * как кандидатов и проверяет кандидатов тем же условием, что и LIKE '%text%' в ItemRepository.getItemsSearch.
+ * Индекс строится из базы при старте и обновляется после коммита транзакций, меняющих вещи.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ItemSearchIndex {
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int GRAM = 3;
+    private static final int REBUILD_CHUNK = 1000;
+
+    private static final Comparator<ScoredDocument> RANKING = Comparator
+            .comparingInt(ScoredDocument::getScore).reversed()
+            .thenComparing(scored -> scored.getDocument().getId());
+
+    private final ItemRepository repository;
+
+    private final Map<Long, ItemSearchDocument> documents = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> trigrams = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long lastId = 0;
+        List<ItemSearchDocument> chunk;
+
+        do {
+            chunk = repository.findSearchDocuments(lastId, PageRequest.of(0, REBUILD_CHUNK));
+
+            for (ItemSearchDocument document : chunk) {
+                // Вещь могла уже попасть в индекс свежей версией из index(), старый снимок ее не перетирает
+                addIfAbsent(document);
+                lastId = document.getId();
+            }
+        } while (chunk.size() == REBUILD_CHUNK);
+
+        ready = true;
+        log.info("Поисковый индекс вещей построен: {} вещей, {} токенов", documents.size(), postings.size());
+    }
+
+    // Пока индекс не построен, поиск должен идти в базу
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void index(Item item) {
+        ItemSearchDocument document = new ItemSearchDocument(item.getId(), item.getOwner().getId(),
+                item.getName(), item.getDescription(), item.getAvailable());
+
+        afterCommit(() -> put(document));
+    }
+
+    // Вещи удаляются из базы каскадно вместе с владельцем
+    public void removeByOwner(long ownerId) {
+        afterCommit(() -> documents.values().stream()
+                .filter(document -> document.getOwnerId() == ownerId)
+                .map(ItemSearchDocument::getId)
+                .forEach(this::remove));
+    }
+
+    public List<ItemSearchDocument> search(String text, int from, int size) {
+        final String query = text.toLowerCase(Locale.ROOT);
+        final List<String> queryTokens = tokenize(query);
+        final int limit = (int) Math.min((long) from + size, Integer.MAX_VALUE - 1);
+        // Держим только лучшие from + size документов, худший на вершине кучи
+        final PriorityQueue<ScoredDocument> top = new PriorityQueue<>(Math.min(limit, 256) + 1, RANKING.reversed());
+
+        for (ItemSearchDocument document : candidates(queryTokens)) {
+            if (!document.getAvailable()) {
+                continue;
+            }
+
+            int score = score(document, query, queryTokens);
+
+            if (score == 0) {
+                continue;
+            }
+
+            top.add(new ScoredDocument(document, score));
+
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<ScoredDocument> ranked = new ArrayList<>(top);
+        ranked.sort(RANKING);
+
+        List<ItemSearchDocument> page = new ArrayList<>();
+        for (int i = from; i < ranked.size(); i++) {
+            page.add(ranked.get(i).getDocument());
+        }
+
+        return page;
+    }
+
+    private Collection<ItemSearchDocument> candidates(List<String> queryTokens) {
+        // Запрос из одних разделителей: сужать нечем, проверяем все документы
+        if (queryTokens.isEmpty()) {
+            return documents.values();
+        }
+
+        // Кандидатов берем по самому избирательному слову запроса: меньше всего вещей в его списках
+        List<Set<Long>> narrowest = List.of();
+        long narrowestSize = Long.MAX_VALUE;
+
+        // Короткие слова ищутся перебором словаря, поэтому смотрим на них, только если длинных слов нет
+        Set<String> parts = queryTokens.stream()
+                .filter(token -> token.length() >= GRAM)
+                .collect(Collectors.toSet());
+        if (parts.isEmpty()) {
+            parts = new HashSet<>(queryTokens);
+        }
+
+        for (String part : parts) {
+            List<Set<Long>> lists = new ArrayList<>();
+            long size = 0;
+
+            for (String token : tokensContaining(part)) {
+                Set<Long> ids = postings.get(token);
+
+                if (ids != null) {
+                    lists.add(ids);
+                    size += ids.size();
+                }
+            }
+
+            if (size < narrowestSize) {
+                narrowest = lists;
+                narrowestSize = size;
+            }
+        }
+
+        // Одна вещь может встретиться в нескольких списках, поэтому при нескольких списках убираем дубли
+        Collection<Long> ids = narrowest.size() == 1 ? narrowest.get(0) : new HashSet<>();
+        if (narrowest.size() > 1) {
+            narrowest.forEach(ids::addAll);
+        }
+
+        List<ItemSearchDocument> candidates = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ItemSearchDocument document = documents.get(id);
+
+            if (document != null) {
+                candidates.add(document);
+            }
+        }
+
+        return candidates;
+    }
+
+    // Токены словаря, в которые входит part: пересечение триграмм или перебор словаря для коротких частей
+    private Collection<String> tokensContaining(String part) {
+        if (part.length() < GRAM) {
+            List<String> tokens = new ArrayList<>();
+
+            for (String token : postings.keySet()) {
+                if (token.contains(part)) {
+                    tokens.add(token);
+                }
+            }
+
+            return tokens;
+        }
+
+        Set<String> result = null;
+
+        for (String gram : grams(part)) {
+            Set<String> tokens = trigrams.get(gram);
+
+            if (tokens == null) {
+                return Set.of();
+            }
+
+            if (result == null) {
+                result = new HashSet<>(tokens);
+            } else {
+                result.retainAll(tokens);
+            }
+        }
+
+        result.removeIf(token -> !token.contains(part));
+        return result;
+    }
+
+    // Чем выше, тем релевантнее; 0 - вещь не подходит под запрос
+    private int score(ItemSearchDocument document, String query, List<String> queryTokens) {
+        boolean inName = document.getLowerName().contains(query);
+        boolean inDescription = document.getLowerDescription().contains(query);
+
+        if (!inName && !inDescription) {
+            return 0;
+        }
+
+        int score = 0;
+
+        if (inName) {
+            score += document.getLowerName().startsWith(query) ? 6 : 4;
+        }
+
+        if (inDescription) {
+            score += 1;
+        }
+
+        // Бонус за каждое слово запроса, совпавшее со словом вещи целиком
+        for (String token : queryTokens) {
+            if (containsWord(document.getLowerName(), token) || containsWord(document.getLowerDescription(), token)) {
+                score += 1;
+            }
+        }
+
+        return score;
+    }
+
+    private static boolean containsWord(String text, String word) {
+        for (int at = text.indexOf(word); at >= 0; at = text.indexOf(word, at + 1)) {
+            int end = at + word.length();
+
+            if ((at == 0 || !Character.isLetterOrDigit(text.charAt(at - 1)))
+                    && (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private synchronized void put(ItemSearchDocument document) {
+        remove(document.getId());
+        add(document);
+    }
+
+    private synchronized void addIfAbsent(ItemSearchDocument document) {
+        if (!documents.containsKey(document.getId())) {
+            add(document);
+        }
+    }
+
+    private synchronized void add(ItemSearchDocument document) {
+        documents.put(document.getId(), document);
+
+        for (String token : documentTokens(document)) {
+            postings.computeIfAbsent(token, key -> {
+                grams(key).forEach(gram -> trigrams.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(key));
+                return ConcurrentHashMap.newKeySet();
+            }).add(document.getId());
+        }
+    }
+
+    private synchronized void remove(Long itemId) {
+        ItemSearchDocument document = documents.remove(itemId);
+
+        if (document == null) {
+            return;
+        }
+
+        for (String token : documentTokens(document)) {
+            Set<Long> ids = postings.get(token);
+
+            if (ids == null) {
+                continue;
+            }
+
+            ids.remove(itemId);
+
+            // Токен больше нигде не встречается - убираем его из словаря вместе с триграммами
+            if (ids.isEmpty()) {
+                postings.remove(token);
+
+                for (String gram : grams(token)) {
+                    Set<String> tokens = trigrams.get(gram);
+
+                    if (tokens != null) {
+                        tokens.remove(token);
+
+                        if (tokens.isEmpty()) {
+                            trigrams.remove(gram);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private Set<String> documentTokens(ItemSearchDocument document) {
+        Set<String> tokens = new HashSet<>(tokenize(document.getLowerName()));
+        tokens.addAll(tokenize(document.getLowerDescription()));
+        return tokens;
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+
+        for (String token : TOKEN_SEPARATOR.split(text)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+
+        return tokens;
+    }
+
+    private static List<String> grams(String token) {
+        List<String> grams = new ArrayList<>();
+
+        for (int i = 0; i + GRAM <= token.length(); i++) {
+            grams.add(token.substring(i, i + GRAM));
+        }
+
+        return grams;
+    }
+
+    // Индекс должен видеть только закоммиченные изменения, иначе откат транзакции оставит в нем мусор
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static final class ScoredDocument {
+        private final ItemSearchDocument document;
+        private final int score;
+    }
+}
@@ -2,21 +2,33 @@ package ru.practicum.shareit.item.service;
 
 import ru.practicum.shareit.item.dto.comment.CommentRequestDto;
 import ru.practicum.shareit.item.dto.comment.CommentResponseDto;
+import ru.practicum.shareit.item.dto.item.ItemImportResultDto;
 import ru.practicum.shareit.item.dto.item.ItemRequestDto;
 import ru.practicum.shareit.item.dto.item.ItemResponseDto;
 
+import java.io.BufferedReader;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ItemService {
     ItemResponseDto addItem(ItemRequestDto itemDto, long userId);
 
+    ItemImportResultDto importItems(BufferedReader lines, long userId);
+
     ItemResponseDto updateItem(ItemRequestDto itemDto, long userId, long itemId);
 
     ItemResponseDto getItemById(long itemId, long userId);
 
-    List<ItemResponseDto> getItems(long userId);
+    String getItemETag(long itemId, long userId);
+
+    List<ItemResponseDto> getItems(long userId, int from, int size);
+
+    void exportItems(long userId, Consumer<ItemResponseDto> consumer);
+
+    List<ItemResponseDto> getItemsSearch(String text, int from, int size);
 
-    List<ItemResponseDto> getItemsSearch(String text);
+    List<ItemResponseDto> getItemsAvailable(String text, LocalDateTime from, LocalDateTime to, int offset, int size);
 
     CommentResponseDto createComment(CommentRequestDto commentDto, long userId, long itemId);
 }
@@ -1,35 +1,60 @@
 package ru.practicum.shareit.item.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.shareit.booking.dto.BookingMapper;
 import ru.practicum.shareit.booking.dto.BookingShortResponseDto;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingArchiveRepository;
 import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.common.ETags;
+import ru.practicum.shareit.common.OffsetPageRequest;
 import ru.practicum.shareit.exception.AccessDeniedException;
 import ru.practicum.shareit.exception.BadRequestException;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.item.dto.comment.CommentMapper;
 import ru.practicum.shareit.item.dto.comment.CommentRequestDto;
 import ru.practicum.shareit.item.dto.comment.CommentResponseDto;
+import ru.practicum.shareit.item.dto.comment.CommentView;
+import ru.practicum.shareit.item.dto.item.ItemImportErrorDto;
+import ru.practicum.shareit.item.dto.item.ItemImportResultDto;
 import ru.practicum.shareit.item.dto.item.ItemMapper;
 import ru.practicum.shareit.item.dto.item.ItemRequestDto;
 import ru.practicum.shareit.item.dto.item.ItemResponseDto;
+import ru.practicum.shareit.item.dto.item.ItemVersionView;
+import ru.practicum.shareit.item.dto.item.OwnerItemView;
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.model.ItemSummary;
 import ru.practicum.shareit.item.repository.CommentRepository;
 import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.search.ItemSearchIndex;
+import ru.practicum.shareit.user.dto.UserSnapshot;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
-
+import ru.practicum.shareit.user.service.UserCache;
+
+import javax.persistence.EntityManager;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -37,16 +62,125 @@ public class ItemServiceImpl implements ItemService {
     private final ItemRepository repository;
     private final UserRepository userRepository;
     private final BookingRepository bookingRepository;
+    private final BookingArchiveRepository bookingArchiveRepository;
     private final CommentRepository commentRepository;
+    private final ItemSearchIndex searchIndex;
+    private final ItemSummaryService summaryService;
+    private final UserCache userCache;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+
+    @Value("${shareit.items.comments-per-item:10}")
+    private int commentsPerItem;
+
+    @Value("${shareit.items.export.chunk-size:500}")
+    private int exportChunkSize;
+
+    @Value("${shareit.items.import.chunk-size:500}")
+    private int importChunkSize;
+
+    @Value("${shareit.items.import.max-errors:100}")
+    private int importMaxErrors;
 
     @Override
     @Transactional
     public ItemResponseDto addItem(ItemRequestDto itemDto, long userId) {
-        User user = userIdValidation(userId);
+        userIdValidation(userId);
 
-        Item item = ItemMapper.toItem(itemDto, 0, user);
+        Item item = repository.save(ItemMapper.toItem(itemDto, userRepository.getReferenceById(userId)));
+        summaryService.itemCreated(item);
+        searchIndex.index(item);
 
-        return ItemMapper.toItemDto(repository.save(item));
+        return ItemMapper.toItemDto(item);
+    }
+
+    // Строки читаются по одной, а вещи сохраняются порциями по importChunkSize в отдельных транзакциях,
+    // поэтому память не зависит от размера загрузки. Уже сохраненные порции при ошибке не откатываются
+    @Override
+    public ItemImportResultDto importItems(BufferedReader lines, long userId) {
+        userIdValidation(userId);
+
+        final User owner = userRepository.getReferenceById(userId);
+        final List<Item> chunk = new ArrayList<>(importChunkSize);
+        final List<ItemImportErrorDto> errors = new ArrayList<>();
+        long lineNumber = 0;
+        long imported = 0;
+        long failed = 0;
+        String line;
+
+        try {
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                String error = null;
+
+                try {
+                    ItemRequestDto itemDto = objectMapper.readValue(line, ItemRequestDto.class);
+
+                    if (itemDto == null) {
+                        // Строка null читается без ошибки, но вещи в ней нет
+                        error = "Ожидался объект вещи";
+                    } else {
+                        Set<ConstraintViolation<ItemRequestDto>> violations = validator.validate(itemDto);
+
+                        if (violations.isEmpty()) {
+                            chunk.add(ItemMapper.toItem(itemDto, owner));
+                        } else {
+                            error = violations.stream()
+                                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                                    .sorted()
+                                    .collect(Collectors.joining(", "));
+                        }
+                    }
+                } catch (JsonProcessingException e) {
+                    error = "Некорректный JSON: " + e.getOriginalMessage();
+                }
+
+                if (error != null) {
+                    failed++;
+
+                    if (errors.size() < importMaxErrors) {
+                        errors.add(ItemImportErrorDto.builder().line(lineNumber).error(error).build());
+                    }
+                }
+
+                if (chunk.size() == importChunkSize) {
+                    imported += saveChunk(chunk);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        imported += saveChunk(chunk);
+
+        return ItemImportResultDto.builder().imported(imported).failed(failed).errors(errors).build();
+    }
+
+    private int saveChunk(List<Item> chunk) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.saveAll(chunk);
+            chunk.forEach(summaryService::itemCreated);
+            chunk.forEach(searchIndex::index);
+            entityManager.flush();
+        });
+
+        // Контекст персистентности живет весь запрос, без очистки он копил бы все сохраненные вещи
+        entityManager.clear();
+
+        int saved = chunk.size();
+        chunk.clear();
+        return saved;
     }
 
     @Override
@@ -59,7 +193,10 @@ public class ItemServiceImpl implements ItemService {
             throw new AccessDeniedException("Редактирование Пользователем id = " + userId + ", вещи id = " + itemId);
         }
 
-        return ItemMapper.toItemDto(repository.save(ItemMapper.toUpdatedItem(item, itemDto)));
+        Item updated = repository.save(ItemMapper.toUpdatedItem(item, itemDto));
+        searchIndex.index(updated);
+
+        return ItemMapper.toItemDto(updated);
     }
 
     @Override
@@ -76,8 +213,8 @@ public class ItemServiceImpl implements ItemService {
             return ItemMapper.toItemResponseDto(item, null, null, comments);
         }
 
-        List<Booking> bookingsOfItem = bookingRepository.findAllByItemId(itemId);
-        List<BookingShortResponseDto> closestBooking = findClosestBookings(bookingsOfItem).get(itemId);
+        List<BookingShortResponseDto> closestBooking = findClosestBookings(List.of(itemId), LocalDateTime.now())
+                .get(itemId);
 
         if (closestBooking == null) {
             return ItemMapper.toItemResponseDto(item, null, null, comments);
@@ -88,154 +225,196 @@ public class ItemServiceImpl implements ItemService {
 
     @Override
     @Transactional(readOnly = true)
-    public List<ItemResponseDto> getItems(long userId) {
+    public String getItemETag(long itemId, long userId) {
+        ItemVersionView item = repository.findVersionById(itemId, Status.REJECTED, LocalDateTime.now())
+                .orElseThrow(() -> new NotFoundException("Item id = " + itemId));
         userIdValidation(userId);
 
-        // Получаем список вещей пользователя
-        List<Item> ownersItems = repository.findAllByOwnerId(userId);
-        // Получаем все бронирования для всех этих вещей
-        List<Booking> bookingsByItems = bookingRepository.findAllByItemIn(ownersItems);
-        // Получаем мапу, где ключ - это айди вещи, а значение - пара из самых ближайших ее бронирований
-        // Весь этот ужас сделан, чтобы избежать N + 1
-        Map<Long, List<BookingShortResponseDto>> closestBookings = findClosestBookings(bookingsByItems);
-
-        // То же самое проделываем с комментариями
-        List<Comment> comments = commentRepository.findAll();
-        Map<Long, List<CommentResponseDto>> commentsByItem = listCommentstoMap(comments);
-
-        return ownersItems.stream()
-                .map(item -> ItemMapper.toItemResponseDto(item,
-                        closestBookings.get(item.getId()) == null ? null : closestBookings.get(item.getId()).get(0),
-                        closestBookings.get(item.getId()) == null ? null : closestBookings.get(item.getId()).get(1),
-                        commentsByItem.getOrDefault(item.getId(), null)))
-                .collect(Collectors.toList());
+        // Сводки нет только у вещи, вставленной в обход сервиса, до ближайшего запуска. Версий у такой вещи нет,
+        // и ответ отдается без ETag
+        if (item.getCommentsVersion() == null) {
+            return null;
+        }
+
+        if (item.getOwnerId() != userId) {
+            return ETags.of(itemId, item.getVersion(), item.getCommentsVersion());
+        }
+
+        // Владелец видит еще и ближайшие брони, поэтому его ETag отличается от остальных
+        return ETags.of(itemId, item.getVersion(), item.getCommentsVersion(), "owner", item.getBookingsVersion(),
+                item.getNextStart() == null ? "none" : item.getNextStart());
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<ItemResponseDto> getItemsSearch(String text) {
-        if (text.isEmpty()) {
-            return new ArrayList<>();
-        }
+    public List<ItemResponseDto> getItems(long userId, int from, int size) {
+        userIdValidation(userId);
 
-        return repository.getItemsSearch(text).stream()
-                .map(ItemMapper::toItemDto).collect(Collectors.toList());
+        // Получаем страницу вещей пользователя вместе с их сводками
+        return toOwnerItemDtos(repository.findOwnerItems(userId, OffsetPageRequest.of(from, size)));
     }
 
     @Override
-    public CommentResponseDto createComment(CommentRequestDto commentDto, long userId, long itemId) {
-        User user = userIdValidation(userId);
-        Item item = repository.findById(itemId).orElseThrow(() -> new NotFoundException("Item id = " + itemId));
+    @Transactional(readOnly = true)
+    public void exportItems(long userId, Consumer<ItemResponseDto> consumer) {
+        userIdValidation(userId);
 
-        List<Booking> bookings = bookingRepository.findAllByBookerIdAndItemIdAndStatusAndEndBefore(userId, itemId,
-                Status.APPROVED, LocalDateTime.now());
+        // Брони и комментарии догружаются на порцию вещей, как для одной страницы getItems
+        final List<OwnerItemView> chunk = new ArrayList<>(exportChunkSize);
 
-        if (bookings.isEmpty()) {
-            throw new BadRequestException("Вы не можете писать комментарий к вещи, которой не пользовались");
+        try (Stream<OwnerItemView> items = repository.streamOwnerItems(userId)) {
+            items.forEach(item -> {
+                chunk.add(item);
+
+                if (chunk.size() == exportChunkSize) {
+                    exportChunk(chunk, consumer);
+                }
+            });
         }
 
-        Comment comment = CommentMapper.toComment(commentDto, user, item);
-        return CommentMapper.toCommentDto(commentRepository.save(comment));
+        exportChunk(chunk, consumer);
     }
 
-    // товарищ ревьюер, мне кажется это можно сделать куда элегантнее, подскажите пожалуйста
-    private Map<Long, List<BookingShortResponseDto>> findClosestBookings(List<Booking> bookingsByItems) {
-        final LocalDateTime now = LocalDateTime.now();
-        final Map<Long, List<Booking>> bookingMap = listItemsBookingToMap(bookingsByItems);
-        System.out.println(bookingMap);
-        final Map<Long, List<BookingShortResponseDto>> closestBookingToItems = new HashMap<>();
+    private void exportChunk(List<OwnerItemView> chunk, Consumer<ItemResponseDto> consumer) {
+        toOwnerItemDtos(chunk).forEach(consumer);
+        // Отданные вещи больше не нужны, не даем контексту персистентности копить их все
+        for (OwnerItemView view : chunk) {
+            entityManager.detach(view.getItem());
 
-        for (Long itemId : bookingMap.keySet()) {
-            List<Booking> bookings = bookingMap.get(itemId);
+            if (view.getSummary() != null) {
+                entityManager.detach(view.getSummary());
+            }
+        }
+        chunk.clear();
+    }
 
-            Booking closestPastBooking = null;
-            Booking closestFutureBooking = null;
+    // Вещи владельца вместе с ближайшими бронями и свежими комментариями. Ближайшие брони берутся из сводок,
+    // и только для вещей без сводки или с устаревшей сводкой выбираются из BOOKINGS
+    private List<ItemResponseDto> toOwnerItemDtos(List<OwnerItemView> ownersItems) {
+        if (ownersItems.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-            for (Booking booking : bookings) {
-                if (booking.getStatus().equals(Status.REJECTED)) {
-                    continue;
-                }
+        final LocalDateTime now = LocalDateTime.now();
+        List<Long> staleIds = ownersItems.stream()
+                .filter(view -> view.getSummary() == null || !view.getSummary().isFreshAt(now))
+                .map(view -> view.getItem().getId())
+                .collect(Collectors.toList());
+        // Получаем мапу, где ключ - это айди вещи, а значение - пара из самых ближайших ее бронирований.
+        // Ближайшие брони выбираются одним запросом на все такие вещи сразу, чтобы избежать N + 1
+        Map<Long, List<BookingShortResponseDto>> closestBookings = staleIds.isEmpty() ? Map.of()
+                : findClosestBookings(staleIds, now);
+
+        // Комментарии берем только для вещей этой страницы, у которых они есть, и не больше
+        // commentsPerItem свежих комментариев на каждую
+        List<Long> commentedIds = ownersItems.stream()
+                .filter(view -> view.getSummary() == null || view.getSummary().getCommentCount() > 0)
+                .map(view -> view.getItem().getId())
+                .collect(Collectors.toList());
+        Map<Long, List<CommentResponseDto>> commentsByItem = commentedIds.isEmpty() ? Map.of()
+                : findLatestComments(commentedIds);
 
-                LocalDateTime start = booking.getStart();
-                LocalDateTime end = booking.getEnd();
+        List<ItemResponseDto> items = new ArrayList<>(ownersItems.size());
 
-                if (closestFutureBooking == null && start.isAfter(now)) {
-                    closestFutureBooking = booking;
-                    continue;
-                }
+        for (OwnerItemView view : ownersItems) {
+            Item item = view.getItem();
+            ItemSummary summary = view.getSummary();
+            List<CommentResponseDto> comments = commentsByItem.get(item.getId());
 
-                if (closestPastBooking == null && start.isBefore(now)) {
-                    closestPastBooking = booking;
-                    continue;
-                }
+            if (summary != null && summary.isFreshAt(now)) {
+                items.add(ItemMapper.toItemResponseDto(item,
+                        toShortBooking(summary.getLastBookingId(), summary.getLastBookerId()),
+                        toShortBooking(summary.getNextBookingId(), summary.getNextBookerId()), comments));
+                continue;
+            }
 
-                if (closestFutureBooking != null
-                        && start.isBefore(closestFutureBooking.getStart())
-                        && end.isAfter(now)) {
-                    closestFutureBooking = booking;
-                    continue;
-                }
+            List<BookingShortResponseDto> closestBooking = closestBookings.get(item.getId());
+            items.add(ItemMapper.toItemResponseDto(item,
+                    closestBooking == null ? null : closestBooking.get(0),
+                    closestBooking == null ? null : closestBooking.get(1), comments));
+        }
 
-                if (closestPastBooking != null
-                        && end.isAfter(closestPastBooking.getEnd())
-                        && start.isBefore(now)) {
-                    closestPastBooking = booking;
-                }
-            }
+        return items;
+    }
 
-            BookingShortResponseDto pastBooking =
-                    closestPastBooking == null ? null : BookingMapper.toShortBooking(closestPastBooking);
+    private static BookingShortResponseDto toShortBooking(Long bookingId, Long bookerId) {
+        return bookingId == null ? null : BookingShortResponseDto.builder().id(bookingId).bookerId(bookerId).build();
+    }
 
-            BookingShortResponseDto futureBooking =
-                    closestFutureBooking == null ? null : BookingMapper.toShortBooking(closestFutureBooking);
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemResponseDto> getItemsSearch(String text, int from, int size) {
+        if (text.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-            List<BookingShortResponseDto> closestBookings = new ArrayList<>(2);
-            closestBookings.add(pastBooking);
-            closestBookings.add(futureBooking);
-            closestBookingToItems.put(itemId, closestBookings);
+        // Пока индекс строится после старта, ищем по-старому через LIKE
+        if (!searchIndex.isReady()) {
+            return repository.getItemsSearch(text, OffsetPageRequest.of(from, size)).stream()
+                    .map(ItemMapper::toItemDto).collect(Collectors.toList());
         }
 
-        return closestBookingToItems;
+        return searchIndex.search(text, from, size).stream()
+                .map(ItemMapper::toItemDto).collect(Collectors.toList());
     }
 
-    // Лямбда отказывается работать
-    private Map<Long, List<Booking>> listItemsBookingToMap(List<Booking> bookingsByItems) {
-        Map<Long, List<Booking>> bookingMap = new HashMap<>();
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemResponseDto> getItemsAvailable(String text, LocalDateTime from, LocalDateTime to,
+                                                   int offset, int size) {
+        if (!from.isBefore(to)) {
+            throw new BadRequestException("Начало периода должно быть раньше его конца");
+        }
+
+        return repository.findAvailableBetween(text, from, to, Status.APPROVED, OffsetPageRequest.of(offset, size))
+                .stream().map(ItemMapper::toItemDto).collect(Collectors.toList());
+    }
 
-        for (Booking booking : bookingsByItems) {
-            Long itemId = booking.getItem().getId();
+    @Override
+    @Transactional
+    public CommentResponseDto createComment(CommentRequestDto commentDto, long userId, long itemId) {
+        UserSnapshot author = userIdValidation(userId);
+        Item item = repository.findById(itemId).orElseThrow(() -> new NotFoundException("Item id = " + itemId));
 
-            List<Booking> itemsBooking = bookingMap.getOrDefault(itemId, new ArrayList<>());
-            itemsBooking.add(booking);
+        final LocalDateTime now = LocalDateTime.now();
+        List<Booking> bookings = bookingRepository.findAllByBookerIdAndItemIdAndStatusAndEndBefore(userId, itemId,
+                Status.APPROVED, now);
 
-            bookingMap.put(itemId, itemsBooking);
+        // Бронь могла уже уехать в архив, туда смотрим только если в BOOKINGS ее нет
+        if (bookings.isEmpty() && !bookingArchiveRepository.existsByBookerIdAndItemIdAndStatusAndEndBefore(userId,
+                itemId, Status.APPROVED, now)) {
+            throw new BadRequestException("Вы не можете писать комментарий к вещи, которой не пользовались");
         }
 
-        return bookingMap;
-    }
+        Comment comment = CommentMapper.toComment(commentDto, userRepository.getReferenceById(userId), item);
+        comment = commentRepository.save(comment);
+        summaryService.commentAdded(itemId);
 
-    private Map<Long, List<CommentResponseDto>> listCommentstoMap(List<Comment> comments) {
-        Map<Long, List<CommentResponseDto>> commentsMap = new HashMap<>();
+        return CommentMapper.toCommentDto(comment, author);
+    }
 
-        for (Comment comment : comments) {
-            CommentResponseDto commentDto = CommentMapper.toCommentDto(comment);
-            Long itemId = comment.getItem().getId();
+    // Для каждой вещи возвращает пару [последняя бронь, следующая бронь], любая из них может быть null
+    private Map<Long, List<BookingShortResponseDto>> findClosestBookings(List<Long> itemIds, LocalDateTime now) {
+        return BookingMapper.toClosestBookingsByItem(bookingRepository.findClosestBookings(itemIds, now));
+    }
 
-            List<CommentResponseDto> commentDtoByItem = commentsMap.getOrDefault(itemId, new ArrayList<>());
-            commentDtoByItem.add(commentDto);
+    private Map<Long, List<CommentResponseDto>> findLatestComments(List<Long> itemIds) {
+        Map<Long, List<CommentResponseDto>> commentsMap = new HashMap<>();
 
-            commentsMap.put(itemId, commentDtoByItem);
+        for (CommentView comment : commentRepository.findLatestByItemIds(itemIds, commentsPerItem)) {
+            commentsMap.computeIfAbsent(comment.getItemId(), id -> new ArrayList<>())
+                    .add(CommentMapper.toCommentDto(comment));
         }
 
         return commentsMap;
     }
 
-    private User userIdValidation(long userId) {
+    private UserSnapshot userIdValidation(long userId) {
         if (userId == 0) {
             throw new BadRequestException("X-Sharer-User-Id отсутствует");
         }
 
-        return userRepository.findById(userId)
+        return userCache.find(userId)
                 .orElseThrow(() -> new NotFoundException("Пользователь с id = " + userId));
     }
 }
@@ -0,0 +1,96 @@
+package ru.practicum.shareit.item.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.ClosestBookingView;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.dto.comment.CommentCountView;
+import ru.practicum.shareit.item.model.ItemSummary;
+import ru.practicum.shareit.item.repository.CommentRepository;
+import ru.practicum.shareit.item.repository.ItemSummaryRepository;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/*
+ * Пересчет устаревших сводок вещей: тех, у которых следующая бронь уже началась, и тех, что пометили устаревшими
+ * отклонения броней. Сводки пересчитываются порциями, каждая в своей транзакции под блокировкой строк сводок,
+ * поэтому брони, записанные параллельно, либо уже видны пересчету, либо применятся к его результату.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ItemSummaryReconciler {
+    private final ItemSummaryRepository repository;
+    private final BookingRepository bookingRepository;
+    private final CommentRepository commentRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${shareit.items.summary.reconcile-chunk-size:500}")
+    private int chunkSize;
+
+    // Вещи, созданные до появления сводок, получают их при старте
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        Integer inserted = transactionTemplate.execute(status -> repository.insertMissing(LocalDateTime.now()));
+
+        if (inserted != null && inserted > 0) {
+            log.info("Созданы сводки для {} вещей, брони в них заполнит пересчет", inserted);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.items.summary.reconcile-delay:PT10S}")
+    public void reconcile() {
+        final LocalDateTime now = LocalDateTime.now();
+        Integer reconciled;
+
+        do {
+            reconciled = transactionTemplate.execute(status -> reconcileChunk(now));
+        } while (reconciled != null && reconciled == chunkSize);
+    }
+
+    private int reconcileChunk(LocalDateTime now) {
+        List<Long> itemIds = repository.findDueItemIds(now, PageRequest.of(0, chunkSize));
+
+        if (itemIds.isEmpty()) {
+            return 0;
+        }
+
+        List<ItemSummary> summaries = repository.lockAllByItemIds(itemIds);
+        Map<Long, Long> commentCounts = commentRepository.countByItemIds(itemIds).stream()
+                .collect(Collectors.toMap(CommentCountView::getItemId, CommentCountView::getCommentCount));
+        Map<Long, ClosestBookingView> last = new HashMap<>();
+        Map<Long, ClosestBookingView> next = new HashMap<>();
+
+        for (ClosestBookingView booking : bookingRepository.findClosestBookings(itemIds, now)) {
+            (booking.getUpcoming() ? next : last).put(booking.getItemId(), booking);
+        }
+
+        // Сущности под блокировкой, изменения запишутся при коммите
+        for (ItemSummary summary : summaries) {
+            ClosestBookingView lastBooking = last.get(summary.getItemId());
+            ClosestBookingView nextBooking = next.get(summary.getItemId());
+
+            summary.setLastBookingId(lastBooking == null ? null : lastBooking.getId());
+            summary.setLastBookerId(lastBooking == null ? null : lastBooking.getBookerId());
+            summary.setLastStart(lastBooking == null ? null : lastBooking.getStart());
+            summary.setNextBookingId(nextBooking == null ? null : nextBooking.getId());
+            summary.setNextBookerId(nextBooking == null ? null : nextBooking.getBookerId());
+            summary.setNextStart(nextBooking == null ? null : nextBooking.getStart());
+            summary.setRefreshAt(nextBooking == null ? null : nextBooking.getStart());
+            summary.setCommentCount(commentCounts.getOrDefault(summary.getItemId(), 0L));
+        }
+
+        return itemIds.size();
+    }
+}
@@ -0,0 +1,92 @@
+package ru.practicum.shareit.item.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.model.ItemSummary;
+import ru.practicum.shareit.item.repository.ItemSummaryRepository;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/*
+ * Поддержка сводок вещей (ItemSummary) при записи броней и комментариев.
+ * Методы вызываются внутри транзакции, которая меняет брони или комментарии, и меняют сводку в той же транзакции.
+ * Если новую последнюю или следующую бронь нельзя определить по одной записи, сводка помечается устаревшей,
+ * и ее пересчитывает ItemSummaryReconciler. Список вещей владельца устаревшие сводки досчитывает сам.
+ *
+ * Каждая запись начинается с безусловного UPDATE строки сводки: версии броней или комментариев для ETag.
+ * Он же держит строку до коммита, даже если условная запись после него ничего не изменит. Иначе пересчет
+ * устаревшей сводки, не видя еще не закоммиченной брони, записал бы свежую сводку без нее.
+ */
+@Service
+@RequiredArgsConstructor
+public class ItemSummaryService {
+    private final ItemSummaryRepository repository;
+    private final EntityManager entityManager;
+
+    // Пустая сводка новой вещи. persist, а не save: id уже задан, и save сначала искал бы строку в базе
+    public void itemCreated(Item item) {
+        entityManager.persist(ItemSummary.builder().itemId(item.getId()).commentCount(0L)
+                .bookingsVersion(0L).commentsVersion(0L).build());
+    }
+
+    // Новая или снова одобренная бронь может стать следующей, а уже начавшаяся - последней
+    public void bookingAdded(Booking booking, LocalDateTime now) {
+        final Long itemId = booking.getItem().getId();
+        final Long bookerId = booking.getBooker().getId();
+        repository.incrementBookingsVersion(List.of(itemId));
+
+        if (booking.getStart().isAfter(now)) {
+            repository.offerNext(itemId, booking.getId(), bookerId, booking.getStart(), now);
+        } else {
+            repository.offerLast(itemId, booking.getId(), bookerId, booking.getStart(), now);
+        }
+    }
+
+    public void bookingsRejected(Collection<Long> itemIds, Collection<Long> bookingIds) {
+        if (!bookingIds.isEmpty()) {
+            lockInOrder(itemIds);
+            repository.invalidateByBookings(itemIds, bookingIds, LocalDateTime.now());
+        }
+    }
+
+    // Пакет снова одобрил отклоненные брони этих вещей. По одному обновлению на бронь пакет не делает
+    public void bookingsRestored(Collection<Long> itemIds) {
+        if (!itemIds.isEmpty()) {
+            lockInOrder(itemIds);
+            repository.invalidate(itemIds, LocalDateTime.now());
+        }
+    }
+
+    // Брони ушли в архив. Сводку, где архивная бронь была последней или следующей, пересчитает
+    // ItemSummaryReconciler по живой таблице броней, как и карточка вещи
+    public void bookingsArchived(Collection<Long> itemIds, Collection<Long> bookingIds) {
+        if (!itemIds.isEmpty()) {
+            lockInOrder(itemIds);
+            repository.invalidateByBookings(itemIds, bookingIds, LocalDateTime.now());
+        }
+    }
+
+    public void commentAdded(long itemId) {
+        repository.incrementCommentCount(itemId);
+    }
+
+    public void commentAuthorRenamed(long userId) {
+        List<Long> itemIds = repository.lockByCommentAuthor(userId);
+
+        if (!itemIds.isEmpty()) {
+            repository.incrementCommentsVersion(itemIds);
+        }
+    }
+
+    // Строку одной сводки заблокирует сама запись, порядок важен только для нескольких
+    private void lockInOrder(Collection<Long> itemIds) {
+        if (itemIds.size() > 1) {
+            repository.lockByItemIds(itemIds);
+        }
+    }
+}
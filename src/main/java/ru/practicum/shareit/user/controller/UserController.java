@@ -1,49 +1,96 @@
 package ru.practicum.shareit.user.controller;
 
 import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.shareit.common.BulkheadGroup;
+import ru.practicum.shareit.common.Bulkheads;
+import ru.practicum.shareit.common.ETags;
+import ru.practicum.shareit.common.JsonArrayStreaming;
+import ru.practicum.shareit.common.SqlBudget;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.service.UserService;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping(path = "/users")
 @Slf4j
+@Validated
 public class UserController {
 
     private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final Bulkheads bulkheads;
 
+    @SqlBudget(1)
     @PostMapping
-    public UserDto addUser(@Valid @RequestBody UserDto user) {
+    public CompletableFuture<UserDto> addUser(@Valid @RequestBody UserDto user) {
         log.info("addUser");
-        return userService.addUser(user);
+        return bulkheads.supply(BulkheadGroup.USER_ADMIN, () -> userService.addUser(user));
     }
 
+    // Переименование автора комментариев меняет еще и версии комментариев в сводках его вещей
+    @SqlBudget(4)
     @PatchMapping("/{id}")
-    public UserDto updateUser(@RequestBody UserDto user, @PathVariable long id) {
+    public CompletableFuture<UserDto> updateUser(@RequestBody UserDto user, @PathVariable long id) {
         log.info("updateUser");
-        return userService.updateUser(user, id);
+        return bulkheads.supply(BulkheadGroup.USER_ADMIN, () -> userService.updateUser(user, id));
     }
 
+    @SqlBudget(2)
     @DeleteMapping("/{id}")
-    public void deleteUserById(@PathVariable long id) {
+    public CompletableFuture<Void> deleteUserById(@PathVariable long id) {
         log.info("deleteUserById");
-        userService.deleteUserById(id);
+        return bulkheads.supply(BulkheadGroup.USER_ADMIN, () -> {
+            userService.deleteUserById(id);
+            return null;
+        });
     }
 
+    @SqlBudget(1)
     @GetMapping("/{id}")
-    public UserDto getUserById(@PathVariable long id) {
+    public CompletableFuture<ResponseEntity<UserDto>> getUserById(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @PathVariable long id) {
         log.info("getUserById");
-        return userService.getUserById(id);
+        return bulkheads.supply(BulkheadGroup.USER_ADMIN, () -> ETags.conditional(ifNoneMatch,
+                userService.getUserETag(id), () -> userService.getUserById(id)));
     }
 
+    @SqlBudget(1)
     @GetMapping
-    public List<UserDto> getUsers() {
+    public CompletableFuture<List<UserDto>> getUsers(
+            @RequestParam(defaultValue = "0") @PositiveOrZero int from,
+            @RequestParam(required = false) @Positive Integer size) {
         log.info("getUsers");
-        return userService.getUsers();
+        int limit = pageSize(size);
+        return bulkheads.supply(BulkheadGroup.USER_ADMIN, () -> userService.getUsers(from, limit));
     }
-}
\ No newline at end of file
+
+    // Выгрузка всех пользователей потоком, память не зависит от их числа. JSON-массив или NDJSON по Accept
+    @SqlBudget(1)
+    @GetMapping("/export")
+    public StreamingResponseBody exportUsers(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            HttpServletResponse response) {
+        log.info("exportUsers");
+        return JsonArrayStreaming.of(objectMapper, accept, response, userService::exportUsers);
+    }
+
+    // Без size список отдается целиком, как и до постраничного вывода
+    private static int pageSize(Integer size) {
+        return size == null ? Integer.MAX_VALUE : size;
+    }
+}
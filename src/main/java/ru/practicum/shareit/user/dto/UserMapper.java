@@ -15,6 +15,18 @@ public final class UserMapper {
                 .build();
     }
 
+    public static UserDto toUserDto(UserSnapshot user) {
+        return UserDto.builder()
+                .id(user.getId())
+                .name(user.getName())
+                .email(user.getEmail())
+                .build();
+    }
+
+    public static UserSnapshot toUserSnapshot(User user) {
+        return new UserSnapshot(user.getId(), user.getName(), user.getEmail(), user.getVersion());
+    }
+
     public static User toUser(UserDto userDto) {
         return User.builder()
                 .id(userDto.getId())
@@ -27,6 +39,7 @@ public final class UserMapper {
     public static User toUpdatedUser(User user, UserDto userDto) {
         return User.builder()
                 .id(user.getId())
+                .version(user.getVersion())
                 .name(userDto.getName() == null ? user.getName() : userDto.getName())
                 .email(userDto.getEmail() == null ? user.getEmail() : userDto.getEmail())
                 .build();
@@ -0,0 +1,12 @@
+package ru.practicum.shareit.user.dto;
+
+import lombok.Value;
+
+// Неизменяемый снимок пользователя для кэша: его можно безопасно отдавать нескольким запросам сразу
+@Value
+public class UserSnapshot {
+    Long id;
+    String name;
+    String email;
+    Long version;
+}
@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.Email;
@@ -14,9 +16,13 @@ import javax.validation.constraints.NotNull;
 @Builder
 @Table(name = "USERS")
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.CACHE_REGION)
 @NoArgsConstructor
 @AllArgsConstructor
 public class User {
+    public static final String CACHE_REGION = "users";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -27,4 +33,7 @@ public class User {
     @NotNull
     @Column(unique = true)
     private String email;
+
+    @Version
+    private Long version;
 }
\ No newline at end of file
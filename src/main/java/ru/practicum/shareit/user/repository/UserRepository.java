@@ -1,8 +1,25 @@
 package ru.practicum.shareit.user.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import ru.practicum.shareit.user.model.User;
 
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 public interface UserRepository extends JpaRepository<User, Long> {
 
+    // Страница без подсчета общего числа строк
+    @Query("SELECT u FROM User AS u ORDER BY u.id")
+    List<User> findPage(Pageable page);
+
+    // Для выгрузки: строки приходят из курсора порциями по fetch size, а не одним списком
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT u FROM User AS u ORDER BY u.id")
+    Stream<User> streamAll();
 }
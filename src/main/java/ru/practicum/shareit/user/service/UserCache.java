@@ -0,0 +1,36 @@
+package ru.practicum.shareit.user.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.user.dto.UserMapper;
+import ru.practicum.shareit.user.dto.UserSnapshot;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.util.Optional;
+
+/*
+ * Read-through кэш пользователей перед UserRepository.
+ * Почти каждый запрос начинается с проверки X-Sharer-User-Id, и без кэша это поход в базу на каждый вызов.
+ * Записи вытесняются по размеру и TTL (spring.cache.caffeine.spec) и сбрасываются после изменения
+ * или удаления пользователя. Hit rate виден в метриках cache.gets{name=users} через actuator.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserCache {
+    public static final String USERS = "users";
+
+    private final UserRepository repository;
+
+    // Пустой результат не кэшируется, поэтому пользователь, созданный позже, найдется сразу
+    @Cacheable(cacheNames = USERS, unless = "#result == null")
+    public Optional<UserSnapshot> find(long userId) {
+        return repository.findById(userId).map(UserMapper::toUserSnapshot);
+    }
+
+    @CacheEvict(cacheNames = USERS)
+    public void evict(long userId) {
+
+    }
+}
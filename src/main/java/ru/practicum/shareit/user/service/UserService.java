@@ -3,6 +3,7 @@ package ru.practicum.shareit.user.service;
 import ru.practicum.shareit.user.dto.UserDto;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface UserService {
     UserDto addUser(UserDto user);
@@ -13,5 +14,9 @@ public interface UserService {
 
     UserDto getUserById(long userId);
 
-    List<UserDto> getUsers();
+    String getUserETag(long userId);
+
+    List<UserDto> getUsers(int from, int size);
+
+    void exportUsers(Consumer<UserDto> consumer);
 }
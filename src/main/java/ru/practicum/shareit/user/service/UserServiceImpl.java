@@ -3,19 +3,31 @@ package ru.practicum.shareit.user.service;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.common.ETags;
+import ru.practicum.shareit.common.OffsetPageRequest;
 import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.search.ItemSearchIndex;
+import ru.practicum.shareit.item.service.ItemSummaryService;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.dto.UserMapper;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
 
+import javax.persistence.EntityManager;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class UserServiceImpl implements UserService {
     private final UserRepository repository;
+    private final ItemSearchIndex searchIndex;
+    private final ItemSummaryService summaryService;
+    private final UserCache userCache;
+    private final EntityManager entityManager;
 
     @Override
     @Transactional
@@ -28,26 +40,63 @@ public class UserServiceImpl implements UserService {
     public UserDto updateUser(UserDto userDto, Long userId) {
         User user = repository.findById(userId)
                 .orElseThrow(() -> new NotFoundException("user"));
+        // save переносит новые поля в ту же сущность, старое имя запоминаем до него
+        final String name = user.getName();
 
-        return UserMapper.toUserDto(repository.save(UserMapper.toUpdatedUser(user, userDto)));
+        UserDto updated = UserMapper.toUserDto(repository.save(UserMapper.toUpdatedUser(user, userDto)));
+
+        // Имя автора входит в комментарии, а с ними и в ETag карточек вещей
+        if (!name.equals(updated.getName())) {
+            summaryService.commentAuthorRenamed(userId);
+        }
+
+        // Кэш сбрасывается после коммита, до него остальные запросы видят старую версию и в базе, и в кэше
+        userCache.evict(userId);
+
+        return updated;
     }
 
     @Override
     @Transactional
     public void deleteUserById(long userId) {
         repository.deleteById(userId);
+        // Вещи пользователя удаляются каскадно, убираем их и из поиска
+        searchIndex.removeByOwner(userId);
+        // Каскад выполняет база, Hibernate о нем не знает, поэтому удаленные вещи убираем из кэша второго уровня сами
+        entityManager.getEntityManagerFactory().getCache().evict(Item.class);
+        userCache.evict(userId);
     }
 
     @Override
     @Transactional(readOnly = true)
     public UserDto getUserById(long userId) {
-        return UserMapper.toUserDto(repository.findById(userId)
+        return UserMapper.toUserDto(userCache.find(userId)
                 .orElseThrow(() -> new NotFoundException("user")));
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<UserDto> getUsers() {
-        return repository.findAll().stream().map(UserMapper::toUserDto).collect(Collectors.toList());
+    public String getUserETag(long userId) {
+        return ETags.of(userId, userCache.find(userId)
+                .orElseThrow(() -> new NotFoundException("user")).getVersion());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserDto> getUsers(int from, int size) {
+        return repository.findPage(OffsetPageRequest.of(from, size)).stream()
+                .map(UserMapper::toUserDto).collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportUsers(Consumer<UserDto> consumer) {
+        try (Stream<User> users = repository.streamAll()) {
+            users.forEach(user -> {
+                consumer.accept(UserMapper.toUserDto(user));
+                // Отданный пользователь больше не нужен, не даем контексту персистентности копить всю таблицу
+                entityManager.detach(user);
+            });
+        }
     }
 }
@@ -0,0 +1,9 @@
+-- Базы, созданные до перехода вещей на ITEMS_SEQ: у ITEMS.ID была identity, а последовательность начиналась с 1
+-- и первая же новая вещь столкнулась бы с существующими id
+ALTER TABLE ITEMS ALTER COLUMN ID DROP IDENTITY IF EXISTS;
+
+-- По значению N последовательности Hibernate (pooled) выдает id от N - 49 до N, поэтому после setval(MAX(ID))
+-- следующая пачка начнется сразу за последней вещью. Последовательность сдвигается только вперед и только если
+-- отстала от таблицы, иначе перезапуск одного экземпляра отдал бы повторно id из пачек других
+SELECT setval('ITEMS_SEQ', (SELECT MAX(ID) FROM ITEMS))
+WHERE (SELECT last_value FROM ITEMS_SEQ) < (SELECT MAX(ID) FROM ITEMS);
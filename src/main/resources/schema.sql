@@ -2,16 +2,23 @@ CREATE TABLE IF NOT EXISTS USERS (
   ID        BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
   NAME      VARCHAR(64) NOT NULL,
   EMAIL     VARCHAR(256) NOT NULL,
+  VERSION   BIGINT DEFAULT 0 NOT NULL,
   CONSTRAINT PK_USER PRIMARY KEY (ID),
   CONSTRAINT UQ_USER_EMAIL UNIQUE (EMAIL)
 );
 
+-- Id вещей выдает Hibernate из этой последовательности пачками по 50 (pooled), шаг должен совпадать с allocationSize.
+-- Своего значения по умолчанию у ITEMS.ID нет: вставка в обход Hibernate тоже берет id из ITEMS_SEQ.
+-- Базы, созданные раньше с identity, переводит schema-postgresql.sql
+CREATE SEQUENCE IF NOT EXISTS ITEMS_SEQ START WITH 1 INCREMENT BY 50;
+
 CREATE TABLE IF NOT EXISTS ITEMS (
-  ID            BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+  ID            BIGINT NOT NULL,
   NAME          VARCHAR(32) NOT NULL,
   DESCRIPTION   VARCHAR(256) NOT NULL,
   AVAILABLE     BOOLEAN NOT NULL,
   OWNER         BIGINT NOT NULL REFERENCES USERS (ID) ON DELETE CASCADE,
+  VERSION       BIGINT DEFAULT 0 NOT NULL,
   CONSTRAINT PK_ITEM PRIMARY KEY (ID)
 );
 
@@ -22,9 +29,23 @@ CREATE TABLE IF NOT EXISTS BOOKINGS (
   ITEM_ID       BIGINT NOT NULL REFERENCES ITEMS (ID),
   BOOKER_ID     BIGINT NOT NULL REFERENCES USERS (ID),
   STATUS        VARCHAR(10) NOT NULL,
+  VERSION       BIGINT DEFAULT 0 NOT NULL,
   CONSTRAINT PK_BOOKING PRIMARY KEY (ID)
 );
 
+-- Давно закончившиеся брони, перенесенные из BOOKINGS (BookingArchiver) с прежними id. На PostgreSQL таблицу
+-- можно объявить PARTITION BY RANGE (END_TIME) и отключать старые секции целиком, запросы от этого не меняются
+CREATE TABLE IF NOT EXISTS BOOKINGS_ARCHIVE (
+  ID            BIGINT NOT NULL,
+  START_TIME    TIMESTAMP NOT NULL,
+  END_TIME      TIMESTAMP NOT NULL,
+  ITEM_ID       BIGINT NOT NULL REFERENCES ITEMS (ID),
+  BOOKER_ID     BIGINT NOT NULL REFERENCES USERS (ID),
+  STATUS        VARCHAR(10) NOT NULL,
+  VERSION       BIGINT DEFAULT 0 NOT NULL,
+  CONSTRAINT PK_BOOKINGS_ARCHIVE PRIMARY KEY (ID)
+);
+
 CREATE TABLE IF NOT EXISTS COMMENTS (
     ID          BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
     COMMENT     VARCHAR(2000) NOT NULL,
@@ -32,4 +53,83 @@ CREATE TABLE IF NOT EXISTS COMMENTS (
     USER_ID     BIGINT NOT NULL REFERENCES USERS (ID),
     CREATED     TIMESTAMP NOT NULL,
     CONSTRAINT PK_COMMENTS PRIMARY KEY (ID)
-);
\ No newline at end of file
+);
+
+-- Сводка для списка вещей владельца (ItemSummary): последняя и следующая брони и число комментариев.
+-- REFRESH_AT - когда сводку пора пересчитать, по IDX_ITEM_SUMMARY_REFRESH_AT ее находит ItemSummaryReconciler
+CREATE TABLE IF NOT EXISTS ITEM_SUMMARY (
+  ITEM_ID           BIGINT NOT NULL REFERENCES ITEMS (ID) ON DELETE CASCADE,
+  LAST_BOOKING_ID   BIGINT,
+  LAST_BOOKER_ID    BIGINT,
+  LAST_START        TIMESTAMP,
+  NEXT_BOOKING_ID   BIGINT,
+  NEXT_BOOKER_ID    BIGINT,
+  NEXT_START        TIMESTAMP,
+  COMMENT_COUNT     BIGINT DEFAULT 0 NOT NULL,
+  REFRESH_AT        TIMESTAMP,
+  CONSTRAINT PK_ITEM_SUMMARY PRIMARY KEY (ITEM_ID)
+);
+
+-- Исходящая очередь событий броней (outbox): пишется в транзакции брони, раздается BookingOutboxDispatcher.
+-- Потребители читают по первичному ключу, каждый со своего чекпоинта
+CREATE TABLE IF NOT EXISTS BOOKING_EVENTS (
+  ID            BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+  TYPE          VARCHAR(16) NOT NULL,
+  BOOKING_ID    BIGINT NOT NULL,
+  ITEM_ID       BIGINT NOT NULL,
+  BOOKER_ID     BIGINT NOT NULL,
+  OWNER_ID      BIGINT NOT NULL,
+  START_TIME    TIMESTAMP NOT NULL,
+  END_TIME      TIMESTAMP NOT NULL,
+  CREATED       TIMESTAMP NOT NULL,
+  CONSTRAINT PK_BOOKING_EVENTS PRIMARY KEY (ID)
+);
+
+-- Полосы, под одной из которых транзакция получает id событий и держит ее до коммита. Раздача событий
+-- берет все полосы разом: к этому моменту каждое событие с уже выданным id закоммичено или откачено,
+-- и чекпоинт потребителя не может обогнать еще не закоммиченное событие
+CREATE TABLE IF NOT EXISTS BOOKING_EVENT_LOCK (
+  ID  INT NOT NULL,
+  CONSTRAINT PK_BOOKING_EVENT_LOCK PRIMARY KEY (ID)
+);
+
+INSERT INTO BOOKING_EVENT_LOCK (ID)
+WITH RECURSIVE STRIPES (ID) AS (SELECT 0 UNION ALL SELECT ID + 1 FROM STRIPES WHERE ID < 63)
+SELECT ID FROM STRIPES WHERE ID NOT IN (SELECT ID FROM BOOKING_EVENT_LOCK);
+
+CREATE TABLE IF NOT EXISTS BOOKING_EVENT_CHECKPOINTS (
+  CONSUMER        VARCHAR(64) NOT NULL,
+  LAST_EVENT_ID   BIGINT NOT NULL,
+  CONSTRAINT PK_BOOKING_EVENT_CHECKPOINTS PRIMARY KEY (CONSUMER)
+);
+
+-- Поток SSE держит чекпоинт в памяти каждого экземпляра, общий больше не нужен
+DELETE FROM BOOKING_EVENT_CHECKPOINTS WHERE CONSUMER = 'sse-stream';
+
+-- Версии строк для ETag и оптимистичных блокировок. Для баз, созданных до появления столбцов
+ALTER TABLE USERS ADD COLUMN IF NOT EXISTS VERSION BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE ITEMS ADD COLUMN IF NOT EXISTS VERSION BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE BOOKINGS ADD COLUMN IF NOT EXISTS VERSION BIGINT DEFAULT 0 NOT NULL;
+-- Версии броней и комментариев вещи для ETag карточки, чтобы не агрегировать их историю на каждый запрос
+ALTER TABLE ITEM_SUMMARY ADD COLUMN IF NOT EXISTS BOOKINGS_VERSION BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE ITEM_SUMMARY ADD COLUMN IF NOT EXISTS COMMENTS_VERSION BIGINT DEFAULT 0 NOT NULL;
+
+-- Индексы под keyset-пагинацию списков бронирований по (START_TIME, ID).
+-- IDX_BOOKINGS_ITEM_START также обслуживает поиск последней и следующей брони вещи
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_BOOKER_START ON BOOKINGS (BOOKER_ID, START_TIME DESC, ID DESC);
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_BOOKER_STATUS_START ON BOOKINGS (BOOKER_ID, STATUS, START_TIME DESC, ID DESC);
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_ITEM_START ON BOOKINGS (ITEM_ID, START_TIME DESC, ID DESC);
+CREATE INDEX IF NOT EXISTS IDX_ITEMS_OWNER ON ITEMS (OWNER, ID);
+CREATE INDEX IF NOT EXISTS IDX_COMMENTS_ITEM_CREATED ON COMMENTS (ITEM_ID, CREATED DESC, ID DESC);
+-- Вещи, которые комментировал переименованный пользователь
+CREATE INDEX IF NOT EXISTS IDX_COMMENTS_USER ON COMMENTS (USER_ID, ITEM_ID);
+-- Проверка занятости вещи одобренными бронями в /items/available
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_ITEM_STATUS_TIME ON BOOKINGS (ITEM_ID, STATUS, START_TIME, END_TIME);
+-- Поиск броней для переноса в архив и списки броней из архива в том же порядке, что и из BOOKINGS
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_END ON BOOKINGS (END_TIME, ID);
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_ARCHIVE_BOOKER_START ON BOOKINGS_ARCHIVE (BOOKER_ID, START_TIME DESC, ID DESC);
+CREATE INDEX IF NOT EXISTS IDX_BOOKINGS_ARCHIVE_ITEM_START ON BOOKINGS_ARCHIVE (ITEM_ID, START_TIME DESC, ID DESC);
+CREATE INDEX IF NOT EXISTS IDX_ITEM_SUMMARY_REFRESH_AT ON ITEM_SUMMARY (REFRESH_AT);
+-- Возобновление потока событий пользователя (/bookings/stream) с Last-Event-ID
+CREATE INDEX IF NOT EXISTS IDX_BOOKING_EVENTS_BOOKER ON BOOKING_EVENTS (BOOKER_ID, ID);
+CREATE INDEX IF NOT EXISTS IDX_BOOKING_EVENTS_OWNER ON BOOKING_EVENTS (OWNER_ID, ID);
@@ -0,0 +1,319 @@
+package ru.practicum.shareit;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.State;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.stream.BookingEventStream;
+import ru.practicum.shareit.common.SqlBudget;
+import ru.practicum.shareit.item.model.Comment;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.CommentRepository;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.service.ItemSummaryReconciler;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+// Каждый обработчик контроллеров укладывается в свой @SqlBudget. Данных заведомо больше одного на вещь и пользователя,
+// кэши перед каждым запросом сброшены, так что лишний запрос в цикле сразу выйдет за бюджет
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SqlBudgetTest {
+    private static final String USER_ID_HEADER = "X-Sharer-User-Id";
+    private static final int ITEMS = 10;
+    private static final List<String> STATEMENTS = Collections.synchronizedList(new ArrayList<>());
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    @Qualifier("requestMappingHandlerMapping")
+    private RequestMappingHandlerMapping handlerMapping;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private BookingEventStream stream;
+
+    @Autowired
+    private ItemSummaryReconciler reconciler;
+
+    private final Set<Method> exercised = new HashSet<>();
+
+    private User owner;
+    private User booker;
+    private User commenter;
+    private Item item;
+    private Booking waiting;
+    private List<Booking> rejected;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(user("owner"));
+        booker = userRepository.save(user("booker"));
+        LocalDateTime now = LocalDateTime.now();
+        rejected = new ArrayList<>();
+
+        for (int i = 0; i < ITEMS; i++) {
+            item = itemRepository.save(Item.builder().name("Дрель " + i).description("Простая дрель")
+                    .available(true).owner(owner).build());
+            commenter = userRepository.save(user("commenter" + i));
+
+            bookingRepository.save(Booking.builder().item(item).booker(booker).status(Status.APPROVED)
+                    .start(now.minusDays(i + 2)).end(now.minusDays(i + 1)).build());
+            bookingRepository.save(Booking.builder().item(item).booker(commenter).status(Status.APPROVED)
+                    .start(now.plusDays(i + 1)).end(now.plusDays(i + 2)).build());
+            waiting = bookingRepository.save(Booking.builder().item(item).booker(booker).status(Status.WAITING)
+                    .start(now.plusDays(i + 20)).end(now.plusDays(i + 21)).build());
+            rejected.add(waiting);
+            commentRepository.save(Comment.builder().text("Отличная дрель").item(item).user(commenter)
+                    .created(now.minusHours(i)).build());
+        }
+
+        // Вещи сохранены в обход сервиса: сводки им создает пересчет, сразу устаревшими
+        reconciler.backfill();
+    }
+
+    @Test
+    void itemEndpoints() throws Exception {
+        assertWithinBudget(post("/items").header(USER_ID_HEADER, owner.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\": \"Пила\", \"description\": \"Ручная пила\", \"available\": true}"));
+        assertWithinBudget(post("/items/bulk").header(USER_ID_HEADER, owner.getId())
+                .contentType("application/x-ndjson")
+                .content("{\"name\": \"Пила\", \"description\": \"Ручная пила\", \"available\": true}\n" +
+                        "{\"name\": \"Лобзик\", \"description\": \"Электрический\", \"available\": false}\n"));
+        assertWithinBudget(patch("/items/{id}", item.getId()).header(USER_ID_HEADER, owner.getId())
+                .contentType(MediaType.APPLICATION_JSON).content("{\"description\": \"Мощная дрель\"}"));
+        assertWithinBudget(get("/items/{id}", item.getId()).header(USER_ID_HEADER, owner.getId()));
+        assertWithinBudget(get("/items").header(USER_ID_HEADER, owner.getId()));
+        assertWithinBudget(get("/items/export").header(USER_ID_HEADER, owner.getId()));
+        assertWithinBudget(get("/items/search").param("text", "дрель"));
+        assertWithinBudget(get("/items/available").param("text", "дрель")
+                .param("from", LocalDateTime.now().plusDays(1).toString())
+                .param("to", LocalDateTime.now().plusDays(3).toString()));
+        assertWithinBudget(post("/items/{id}/comment", item.getId()).header(USER_ID_HEADER, booker.getId())
+                .contentType(MediaType.APPLICATION_JSON).content("{\"text\": \"Хорошая дрель\"}"));
+    }
+
+    @Test
+    void bookingEndpoints() throws Exception {
+        assertWithinBudget(post("/bookings").header(USER_ID_HEADER, booker.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(String.format("{\"itemId\": %d, \"start\": \"%s\", \"end\": \"%s\"}", item.getId(),
+                        LocalDateTime.now().plusDays(40), LocalDateTime.now().plusDays(41))));
+        assertWithinBudget(get("/bookings/{id}", waiting.getId()).header(USER_ID_HEADER, booker.getId()));
+
+        for (State state : new State[]{State.ALL, State.CURRENT, State.PAST, State.FUTURE, State.WAITING,
+            State.REJECTED}) {
+            assertWithinBudget(get("/bookings").param("state", state.name()).header(USER_ID_HEADER, booker.getId()));
+            assertWithinBudget(get("/bookings/owner").param("state", state.name())
+                    .header(USER_ID_HEADER, owner.getId()));
+        }
+        assertWithinBudget(get("/bookings").param("shape", "normalized").header(USER_ID_HEADER, booker.getId()));
+        assertWithinBudget(get("/bookings/owner").param("shape", "normalized").header(USER_ID_HEADER, owner.getId()));
+
+        String decisions = rejected.stream()
+                .filter(booking -> !booking.getId().equals(waiting.getId()))
+                .map(booking -> String.format("{\"bookingId\": %d, \"approved\": false}", booking.getId()))
+                .collect(Collectors.joining(",", "[", "]"));
+        assertWithinBudget(patch("/bookings/batch").header(USER_ID_HEADER, owner.getId())
+                .contentType(MediaType.APPLICATION_JSON).content(decisions));
+        // Снова одобряем отклоненные брони разных вещей: деревья пересечений этих вещей еще не загружены
+        assertWithinBudget(patch("/bookings/batch").header(USER_ID_HEADER, owner.getId())
+                .contentType(MediaType.APPLICATION_JSON).content(decisions.replace("false", "true")));
+        assertWithinBudget(patch("/bookings/{id}", waiting.getId()).param("approved", "true")
+                .header(USER_ID_HEADER, owner.getId()));
+        // Поток сам не заканчивается: закрываем его, когда история после Last-Event-ID уже прочитана
+        assertWithinBudget(get("/bookings/stream").header(USER_ID_HEADER, owner.getId())
+                .header("Last-Event-ID", 0), stream::closeAll);
+    }
+
+    @Test
+    void userEndpoints() throws Exception {
+        assertWithinBudget(post("/users").contentType(MediaType.APPLICATION_JSON)
+                .content(String.format("{\"name\": \"new\", \"email\": \"%s@shareit.ru\"}", UUID.randomUUID())));
+        assertWithinBudget(patch("/users/{id}", commenter.getId()).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\": \"renamed\"}"));
+        assertWithinBudget(get("/users/{id}", booker.getId()));
+        assertWithinBudget(get("/users"));
+        assertWithinBudget(get("/users/export"));
+        assertWithinBudget(delete("/users/{id}", userRepository.save(user("deleted")).getId()));
+    }
+
+    // Проверка X-Sharer-User-Id идет через кэш пользователей: с теплыми кэшами запрос дешевле, чем по бюджету.
+    // Изменение пользователя сбрасывает его снимок, но сам пользователь к этому времени уже в кэше второго уровня
+    @Test
+    void userLookupIsCachedUntilUpdate() throws Exception {
+        MockHttpServletRequestBuilder request = get("/bookings/{id}", waiting.getId())
+                .header(USER_ID_HEADER, booker.getId());
+        int cold = assertWithinBudget(request);
+        int warm = perform(request, () -> {
+        });
+
+        assertTrue(warm < cold, () -> String.format("С теплым кэшем %d SQL-запросов, с пустым %d", warm, cold));
+
+        assertWithinBudget(patch("/users/{id}", booker.getId()).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\": \"renamed\"}"));
+        assertEquals(warm, perform(request, () -> {
+        }));
+    }
+
+    // Все обработчики под бюджетом, и каждый из них тест действительно вызвал
+    @AfterAll
+    void everyHandlerHasBudget() {
+        for (HandlerMethod handler : handlerMapping.getHandlerMethods().values()) {
+            if (!handler.getBeanType().getPackageName().startsWith("ru.practicum.shareit")) {
+                continue;
+            }
+
+            assertNotNull(handler.getMethodAnnotation(SqlBudget.class), () -> "Нет @SqlBudget у " + handler);
+            assertTrue(exercised.contains(handler.getMethod()), () -> "SqlBudgetTest не вызывает " + handler);
+        }
+    }
+
+    // Возвращает число выполненных SQL-запросов
+    private int assertWithinBudget(MockHttpServletRequestBuilder request) throws Exception {
+        return assertWithinBudget(request, () -> {
+        });
+    }
+
+    private int assertWithinBudget(MockHttpServletRequestBuilder request, Runnable beforeAsyncResult)
+            throws Exception {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        // Бюджет считается по худшему случаю, поэтому и кэш второго уровня Hibernate пуст
+        entityManagerFactory.getCache().evictAll();
+
+        MvcResult result = execute(request, beforeAsyncResult);
+
+        HandlerMethod handler = (HandlerMethod) result.getHandler();
+        String endpoint = result.getRequest().getMethod() + " " + result.getRequest().getRequestURI();
+        SqlBudget budget = handler.getMethodAnnotation(SqlBudget.class);
+        assertNotNull(budget, () -> "Нет @SqlBudget у " + handler);
+        exercised.add(handler.getMethod());
+
+        List<String> statements = new ArrayList<>(STATEMENTS);
+        assertTrue(statements.size() <= budget.value(), () -> String.format("%s: %d SQL-запросов при бюджете %d%n%s",
+                endpoint, statements.size(), budget.value(), String.join(System.lineSeparator(), statements)));
+        return statements.size();
+    }
+
+    // Запрос с кэшами в том состоянии, в каком их оставили предыдущие запросы
+    private int perform(MockHttpServletRequestBuilder request, Runnable beforeAsyncResult) throws Exception {
+        execute(request, beforeAsyncResult);
+        return STATEMENTS.size();
+    }
+
+    private MvcResult execute(MockHttpServletRequestBuilder request, Runnable beforeAsyncResult) throws Exception {
+        STATEMENTS.clear();
+
+        MvcResult result = mvc.perform(request).andReturn();
+        // Обработчики выполняются в пулах переборок, а выгрузки пишут ответ асинхронно:
+        // их запросы заканчиваются только вместе с ответом
+        if (result.getRequest().isAsyncStarted()) {
+            beforeAsyncResult.run();
+            result.getAsyncResult();
+            mvc.perform(asyncDispatch(result)).andReturn();
+        }
+
+        String endpoint = result.getRequest().getMethod() + " " + result.getRequest().getRequestURI();
+        int status = result.getResponse().getStatus();
+        assertTrue(status < 300, () -> endpoint + " ответил " + status);
+
+        return result;
+    }
+
+    private static User user(String name) {
+        return User.builder().name(name).email(name + UUID.randomUUID() + "@shareit.ru").build();
+    }
+
+    @TestConfiguration
+    static class StatementCounting {
+        // Все запросы к базе идут через прокси, одно выполнение (в том числе пакетное) - один запрос
+        @Bean
+        static BeanPostProcessor countingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource)) {
+                        return bean;
+                    }
+
+                    return ProxyDataSourceBuilder.create((DataSource) bean).listener(new QueryExecutionListener() {
+                        @Override
+                        public void beforeQuery(ExecutionInfo execution, List<QueryInfo> queries) {
+
+                        }
+
+                        @Override
+                        public void afterQuery(ExecutionInfo execution, List<QueryInfo> queries) {
+                            STATEMENTS.add(queries.stream()
+                                    .map(QueryInfo::getQuery)
+                                    .collect(Collectors.joining("; ")));
+                        }
+                    }).build();
+                }
+            };
+        }
+    }
+}
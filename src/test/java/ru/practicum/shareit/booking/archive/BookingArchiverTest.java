@@ -0,0 +1,183 @@
+package ru.practicum.shareit.booking.archive;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.practicum.shareit.booking.dto.BookingCursor;
+import ru.practicum.shareit.booking.dto.BookingResponseDto;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.State;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingArchiveRepository;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.item.dto.comment.CommentRequestDto;
+import ru.practicum.shareit.item.dto.item.ItemResponseDto;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.service.ItemService;
+import ru.practicum.shareit.item.service.ItemSummaryReconciler;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Старые брони уходят в архив, а PAST и ALL по-прежнему отдают всю историю в общем порядке и по страницам
+@SpringBootTest(properties = "shareit.bookings.archive.chunk-size=2")
+class BookingArchiverTest {
+    @Autowired
+    private BookingArchiver archiver;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private ItemSummaryReconciler summaryReconciler;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private BookingArchiveRepository archiveRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private User owner;
+    private User booker;
+    private Item item;
+    private final List<Long> old = new ArrayList<>();
+    private final List<Long> recent = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(user("owner"));
+        booker = userRepository.save(user("booker"));
+        item = itemRepository.save(Item.builder().name("Дрель").description("Простая дрель")
+                .available(true).owner(owner).build());
+        LocalDateTime now = LocalDateTime.now();
+
+        // Старые и недавние брони чередуются по началу, чтобы страницы собирались из обеих таблиц
+        for (int i = 0; i < 5; i++) {
+            old.add(save(now.minusYears(2).minusDays(10L * i), Status.APPROVED));
+            recent.add(save(now.minusDays(10L * i + 1), Status.APPROVED));
+        }
+        recent.add(save(now.plusDays(1), Status.WAITING));
+        old.add(save(now.minusYears(3), Status.REJECTED));
+    }
+
+    @Test
+    void oldBookingsMoveToArchive() {
+        // У второй вещи единственная бронь старая: после переноса последней брони у нее нет
+        Item oldOnly = itemRepository.save(Item.builder().name("Пила").description("Ручная пила")
+                .available(true).owner(owner).build());
+        old.add(bookingRepository.save(Booking.builder().item(oldOnly).booker(booker).status(Status.APPROVED)
+                .start(LocalDateTime.now().minusYears(2)).end(LocalDateTime.now().minusYears(2).plusDays(2))
+                .build()).getId());
+        // Свежие сводки: список вещей владельца берет ближайшие брони из них, а не из BOOKINGS
+        summaryReconciler.backfill();
+        summaryReconciler.reconcile();
+        assertEquals(List.of(old.get(old.size() - 1)), itemService.getItems(owner.getId(), 0, 20).stream()
+                .filter(listed -> listed.getId().equals(oldOnly.getId()))
+                .map(BookingArchiverTest::bookingId)
+                .collect(Collectors.toList()));
+        String etag = itemService.getItemETag(item.getId(), owner.getId());
+        itemRepository.findById(item.getId());
+        assertTrue(archiver.archive() >= old.size());
+
+        // Последняя бронь владельца могла уйти в архив, поэтому ETag его карточки вещи меняется
+        assertNotEquals(etag, itemService.getItemETag(item.getId(), owner.getId()));
+
+        // Список вещей владельца читает сводки, карточка - живую таблицу броней, и последняя бронь у них одна
+        for (ItemResponseDto listed : itemService.getItems(owner.getId(), 0, 20)) {
+            assertEquals(bookingId(listed), bookingId(itemService.getItemById(listed.getId(), owner.getId())));
+        }
+        assertNull(itemService.getItemById(oldOnly.getId(), owner.getId()).getLastBooking());
+
+        // Копирование в архив сбрасывает только свою таблицу, кэш вещей остается
+        assertTrue(entityManagerFactory.getCache().contains(Item.class, item.getId()));
+
+        assertTrue(old.stream().noneMatch(bookingRepository::existsById));
+        assertTrue(old.stream().allMatch(archiveRepository::existsById));
+        assertTrue(recent.stream().allMatch(bookingRepository::existsById));
+
+        // Архивная бронь видна по id, и по ней можно оставить отзыв
+        assertEquals(old.get(0), bookingService.getBooking(old.get(0), booker.getId()).getId());
+        itemService.createComment(CommentRequestDto.builder().text("Давно брал, понравилась").build(),
+                booker.getId(), item.getId());
+
+        // Повторный запуск переносить уже нечего
+        assertEquals(0, archiver.archive());
+    }
+
+    @Test
+    void pastAndAllIncludeArchive() {
+        List<Long> pastBefore = ids(bookingService.getBookingByBooker(booker.getId(), State.PAST, null, 0, 100));
+        List<Long> allBefore = ids(bookingService.getBookingByBooker(booker.getId(), State.ALL, null, 0, 100));
+        List<Long> ownerBefore = ids(bookingService.getBookingItemsByOwner(owner.getId(), State.PAST, null, 0, 100));
+
+        archiver.archive();
+
+        assertEquals(pastBefore, ids(bookingService.getBookingByBooker(booker.getId(), State.PAST, null, 0, 100)));
+        assertEquals(allBefore, ids(bookingService.getBookingByBooker(booker.getId(), State.ALL, null, 0, 100)));
+        assertEquals(ownerBefore, ids(bookingService.getBookingItemsByOwner(owner.getId(), State.PAST, null, 0, 100)));
+
+        // Страницы по смещению и по курсору складываются в тот же список
+        List<Long> byOffset = new ArrayList<>();
+        List<Long> byCursor = new ArrayList<>();
+        BookingCursor cursor = null;
+
+        for (int from = 0; from < allBefore.size(); from += 3) {
+            byOffset.addAll(ids(bookingService.getBookingByBooker(booker.getId(), State.ALL, null, from, 3)));
+
+            List<BookingResponseDto> page = bookingService.getBookingByBooker(booker.getId(), State.ALL, cursor, 0, 3);
+            byCursor.addAll(ids(page));
+            cursor = page.isEmpty() ? cursor : BookingCursor.after(page.get(page.size() - 1));
+        }
+
+        assertEquals(allBefore, byOffset);
+        assertEquals(allBefore, byCursor);
+
+        // Остальные списки архив не читают
+        List<Long> rejected = ids(bookingService.getBookingByBooker(booker.getId(), State.REJECTED, null, 0, 100));
+        assertFalse(rejected.contains(old.get(old.size() - 1)));
+    }
+
+    private long save(LocalDateTime start, Status status) {
+        return bookingRepository.save(Booking.builder().item(item).booker(booker).status(status)
+                .start(start).end(start.plusDays(2)).build()).getId();
+    }
+
+    private static Long bookingId(ItemResponseDto item) {
+        return item.getLastBooking() == null ? null : item.getLastBooking().getId();
+    }
+
+    private static List<Long> ids(List<BookingResponseDto> bookings) {
+        return bookings.stream().map(BookingResponseDto::getId).collect(Collectors.toList());
+    }
+
+    private static User user(String name) {
+        return User.builder().name(name).email(name + UUID.randomUUID() + "@shareit.ru").build();
+    }
+}
@@ -0,0 +1,124 @@
+package ru.practicum.shareit.booking.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Без size списки броней отдаются целиком, с size - по страницам с курсором на следующую
+@SpringBootTest
+@AutoConfigureMockMvc
+class BookingPagingTest {
+    private static final String USER_ID_HEADER = "X-Sharer-User-Id";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int BOOKINGS = 25;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    private User owner;
+    private User booker;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(user("owner"));
+        booker = userRepository.save(user("booker"));
+        Item item = itemRepository.save(Item.builder().name("Дрель").description("Простая дрель")
+                .available(true).owner(owner).build());
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int i = 0; i < BOOKINGS; i++) {
+            bookingRepository.save(Booking.builder().item(item).booker(booker).status(Status.APPROVED)
+                    .start(now.plusDays(2L * i + 1)).end(now.plusDays(2L * i + 2)).build());
+        }
+    }
+
+    @Test
+    void withoutSizeWholeListIsReturned() throws Exception {
+        MvcResult bookings = perform(get("/bookings").header(USER_ID_HEADER, booker.getId()));
+        MvcResult owned = perform(get("/bookings/owner").header(USER_ID_HEADER, owner.getId()));
+
+        assertEquals(BOOKINGS, body(bookings).size());
+        assertEquals(BOOKINGS, body(owned).size());
+        assertNull(bookings.getResponse().getHeader(NEXT_CURSOR_HEADER));
+        assertNull(owned.getResponse().getHeader(NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void pagesFollowNextCursor() throws Exception {
+        List<JsonNode> whole = new ArrayList<>();
+        body(perform(get("/bookings").header(USER_ID_HEADER, booker.getId()))).forEach(whole::add);
+
+        List<JsonNode> paged = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+
+        do {
+            MockHttpServletRequestBuilder request = get("/bookings").param("size", "10")
+                    .header(USER_ID_HEADER, booker.getId());
+            MvcResult page = perform(cursor == null ? request : request.param("cursor", cursor));
+            body(page).forEach(paged::add);
+            cursor = page.getResponse().getHeader(NEXT_CURSOR_HEADER);
+            pages++;
+
+            // Курсор есть у каждой полной страницы
+            if (pages < 3) {
+                assertNotNull(cursor);
+            }
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(whole, paged);
+    }
+
+    private JsonNode body(MvcResult result) throws Exception {
+        return objectMapper.readTree(result.getResponse().getContentAsByteArray());
+    }
+
+    // Обработчики выполняются в пулах переборок, дожидаемся их результата
+    private MvcResult perform(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult result = mvc.perform(request).andReturn();
+        return mvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andReturn();
+    }
+
+    private static User user(String name) {
+        return User.builder().name(name).email(name + UUID.randomUUID() + "@shareit.ru").build();
+    }
+}
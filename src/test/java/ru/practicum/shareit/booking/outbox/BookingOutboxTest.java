@@ -0,0 +1,341 @@
+package ru.practicum.shareit.booking.outbox;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingRequestDto;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingEvent;
+import ru.practicum.shareit.booking.model.BookingEventType;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingEventCheckpointRepository;
+import ru.practicum.shareit.booking.repository.BookingEventRepository;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// События пишутся вместе с бронями, доходят до каждого потребителя по порядку, а непринятая порция приходит снова.
+// Событие не теряется, даже если его транзакция коммитится позже следующей
+@SpringBootTest
+class BookingOutboxTest {
+    private static final List<BookingEvent> RECORDED = Collections.synchronizedList(new ArrayList<>());
+    private static final List<BookingEvent> RETRIED = Collections.synchronizedList(new ArrayList<>());
+    private static final List<BookingEvent> LATEST = Collections.synchronizedList(new ArrayList<>());
+    private static final AtomicBoolean FAIL_ONCE = new AtomicBoolean(true);
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private BookingOutboxDispatcher dispatcher;
+
+    @Autowired
+    private BookingOutbox outbox;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private BookingEventRepository eventRepository;
+
+    @Autowired
+    private BookingEventCheckpointRepository checkpoints;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void lifecycleEventsReachEveryConsumer() {
+        User owner = userRepository.save(user("owner"));
+        User booker = userRepository.save(user("booker"));
+        Item item = itemRepository.save(Item.builder().name("Дрель").description("Простая дрель")
+                .available(true).owner(owner).build());
+        LocalDateTime now = LocalDateTime.now();
+
+        long approved = bookingService.createBooking(booking(item, now.plusDays(1), now.plusDays(2)),
+                booker.getId()).getId();
+        long rejected = bookingService.createBooking(booking(item, now.plusDays(3), now.plusDays(4)),
+                booker.getId()).getId();
+        bookingService.approveBooking(approved, owner.getId(), true);
+        BookingDecisionDto decision = new BookingDecisionDto();
+        decision.setBookingId(rejected);
+        decision.setApproved(false);
+        bookingService.approveBookings(owner.getId(), List.of(decision));
+
+        // Первая раздача: один потребитель падает, второй получает все
+        dispatcher.dispatch();
+        dispatcher.dispatch();
+
+        List<BookingEventType> expected = List.of(BookingEventType.CREATED, BookingEventType.CREATED,
+                BookingEventType.APPROVED, BookingEventType.REJECTED);
+        assertEquals(expected, typesOf(RECORDED, Set.of(approved, rejected)));
+        assertEquals(expected, typesOf(RETRIED, Set.of(approved, rejected)));
+
+        // Все уже подтверждено, повторная раздача ничего не добавляет
+        dispatcher.dispatch();
+        assertEquals(expected, typesOf(RECORDED, Set.of(approved, rejected)));
+    }
+
+    // События пакета пишутся native-запросом, и он не должен сбрасывать кэш второго уровня
+    @Test
+    void batchEventsKeepSecondLevelCache() {
+        User owner = userRepository.save(user("owner"));
+        User booker = userRepository.save(user("booker"));
+        Item item = itemRepository.save(Item.builder().name("Дрель").description("Простая дрель")
+                .available(true).owner(owner).build());
+        LocalDateTime now = LocalDateTime.now();
+        long bookingId = bookingService.createBooking(booking(item, now.plusDays(1), now.plusDays(2)),
+                booker.getId()).getId();
+        itemRepository.findById(item.getId());
+        assertTrue(entityManagerFactory.getCache().contains(Item.class, item.getId()));
+
+        BookingDecisionDto decision = new BookingDecisionDto();
+        decision.setBookingId(bookingId);
+        decision.setApproved(true);
+        bookingService.approveBookings(owner.getId(), List.of(decision));
+
+        assertTrue(entityManagerFactory.getCache().contains(Item.class, item.getId()));
+    }
+
+    // Первая транзакция получила меньший id и еще не закоммичена, вторая на другой полосе получила больший id
+    // и закоммитилась. Раздача ждет первую, а не уходит вперед. После коммита оба события приходят по порядку id
+    @Test
+    void eventCommittedLaterIsNotSkipped() throws Exception {
+        User owner = userRepository.save(user("owner"));
+        User booker = userRepository.save(user("booker"));
+        Item item = itemRepository.save(Item.builder().name("Дрель").description("Простая дрель")
+                .available(true).owner(owner).build());
+        LocalDateTime now = LocalDateTime.now();
+        Booking first = bookingRepository.save(Booking.builder().item(item).booker(booker).status(Status.WAITING)
+                .start(now.plusDays(1)).end(now.plusDays(2)).build());
+        Booking second = bookingRepository.save(Booking.builder().item(item).booker(booker).status(Status.WAITING)
+                .start(now.plusDays(3)).end(now.plusDays(4)).build());
+        Set<Long> bookingIds = Set.of(first.getId(), second.getId());
+
+        CountDownLatch appended = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<?> earlier = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                outbox.append(first);
+                appended.countDown();
+                awaitQuietly(commit);
+            }));
+            assertTrue(appended.await(5, TimeUnit.SECONDS));
+
+            transactionTemplate.executeWithoutResult(status -> outbox.append(second));
+
+            Future<?> dispatch = executor.submit(dispatcher::dispatch);
+            assertThrows(TimeoutException.class, () -> dispatch.get(300, TimeUnit.MILLISECONDS));
+            assertEquals(List.of(), bookingIdsOf(RECORDED, bookingIds));
+
+            commit.countDown();
+            earlier.get(5, TimeUnit.SECONDS);
+            dispatch.get(5, TimeUnit.SECONDS);
+
+            assertEquals(List.of(first.getId(), second.getId()), bookingIdsOf(RECORDED, bookingIds));
+        } finally {
+            commit.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    // Брони двух разных вещей пишут события на разных полосах и не ждут друг друга до коммита
+    @Test
+    void bookingsOnDifferentItemsDoNotBlockEachOther() throws Exception {
+        User owner = userRepository.save(user("owner"));
+        User booker = userRepository.save(user("booker"));
+        Item drill = itemRepository.save(Item.builder().name("Дрель").description("Простая дрель")
+                .available(true).owner(owner).build());
+        Item saw = itemRepository.save(Item.builder().name("Пила").description("Ручная пила")
+                .available(true).owner(owner).build());
+        LocalDateTime now = LocalDateTime.now();
+
+        CountDownLatch created = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<?> open = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                bookingService.createBooking(booking(drill, now.plusDays(1), now.plusDays(2)), booker.getId());
+                created.countDown();
+                awaitQuietly(commit);
+            }));
+            assertTrue(created.await(5, TimeUnit.SECONDS));
+
+            Future<?> other = executor.submit(() -> bookingService.createBooking(
+                    booking(saw, now.plusDays(1), now.plusDays(2)), booker.getId()));
+            other.get(5, TimeUnit.SECONDS);
+            assertFalse(open.isDone());
+
+            commit.countDown();
+            open.get(5, TimeUnit.SECONDS);
+        } finally {
+            commit.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    // Запуск другого экземпляра не сдвигает чекпоинт потребителя, которому нужны только новые события:
+    // он хранится в памяти экземпляра, а не в общей таблице
+    @Test
+    void latestOnlyCheckpointIsPerInstance() {
+        User owner = userRepository.save(user("owner"));
+        User booker = userRepository.save(user("booker"));
+        Item item = itemRepository.save(Item.builder().name("Дрель").description("Простая дрель")
+                .available(true).owner(owner).build());
+        LocalDateTime now = LocalDateTime.now();
+
+        long delivered = bookingService.createBooking(booking(item, now.plusDays(1), now.plusDays(2)),
+                booker.getId()).getId();
+        dispatcher.dispatch();
+        long pending = bookingService.createBooking(booking(item, now.plusDays(3), now.plusDays(4)),
+                booker.getId()).getId();
+
+        new BookingOutboxDispatcher(eventRepository, outbox, checkpoints,
+                List.of(latestConsumer(new ArrayList<>())), transactionTemplate, 500, Duration.ofDays(30))
+                .registerConsumers();
+        dispatcher.dispatch();
+
+        assertEquals(List.of(delivered, pending), bookingIdsOf(LATEST, Set.of(delivered, pending)));
+        assertFalse(checkpoints.existsById("test-latest"));
+    }
+
+    private static List<Long> bookingIdsOf(List<BookingEvent> events, Set<Long> bookingIds) {
+        synchronized (events) {
+            return events.stream()
+                    .map(BookingEvent::getBookingId)
+                    .filter(bookingIds::contains)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<BookingEventType> typesOf(List<BookingEvent> events, Set<Long> bookingIds) {
+        synchronized (events) {
+            return events.stream()
+                    .filter(event -> bookingIds.contains(event.getBookingId()))
+                    .map(BookingEvent::getType)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static BookingRequestDto booking(Item item, LocalDateTime start, LocalDateTime end) {
+        BookingRequestDto bookingDto = new BookingRequestDto();
+        bookingDto.setItemId(item.getId());
+        bookingDto.setStart(start);
+        bookingDto.setEnd(end);
+        return bookingDto;
+    }
+
+    private static User user(String name) {
+        return User.builder().name(name).email(name + UUID.randomUUID() + "@shareit.ru").build();
+    }
+
+    private static BookingEventConsumer latestConsumer(List<BookingEvent> events) {
+        return new BookingEventConsumer() {
+            @Override
+            public String getName() {
+                return "test-latest";
+            }
+
+            @Override
+            public void consume(List<BookingEvent> batch) {
+                events.addAll(batch);
+            }
+
+            @Override
+            public boolean startsFromLatest() {
+                return true;
+            }
+        };
+    }
+
+    @TestConfiguration
+    static class Consumers {
+        @Bean
+        BookingEventConsumer recordingConsumer() {
+            return new BookingEventConsumer() {
+                @Override
+                public String getName() {
+                    return "test-recording";
+                }
+
+                @Override
+                public void consume(List<BookingEvent> events) {
+                    RECORDED.addAll(events);
+                }
+            };
+        }
+
+        @Bean
+        BookingEventConsumer latestOnlyConsumer() {
+            return latestConsumer(LATEST);
+        }
+
+        @Bean
+        BookingEventConsumer failingOnceConsumer() {
+            return new BookingEventConsumer() {
+                @Override
+                public String getName() {
+                    return "test-failing-once";
+                }
+
+                @Override
+                public void consume(List<BookingEvent> events) {
+                    if (FAIL_ONCE.getAndSet(false)) {
+                        throw new IllegalStateException("Потребитель недоступен");
+                    }
+
+                    RETRIED.addAll(events);
+                }
+            };
+        }
+    }
+}
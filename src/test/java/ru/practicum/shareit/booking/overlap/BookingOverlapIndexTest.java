@@ -0,0 +1,282 @@
+package ru.practicum.shareit.booking.overlap;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
+import ru.practicum.shareit.booking.dto.BookingRequestDto;
+import ru.practicum.shareit.booking.dto.BookingResponseDto;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.exception.ConflictException;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class BookingOverlapIndexTest {
+    private static final int THREADS = 8;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void treeFindsSameOverlapsAsFullScan() {
+        Random random = new Random(42);
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 0, 0);
+        IntervalTree tree = new IntervalTree();
+        List<BookingInterval> intervals = new ArrayList<>();
+
+        for (long id = 1; id <= 2000; id++) {
+            LocalDateTime start = base.plusHours(random.nextInt(5000));
+            BookingInterval interval = new BookingInterval(id, start, start.plusHours(1 + random.nextInt(48)));
+            tree.add(interval);
+            intervals.add(interval);
+
+            // Часть интервалов удаляем, чтобы проверить и перебалансировку после удаления
+            if (random.nextInt(3) == 0) {
+                BookingInterval removed = intervals.remove(random.nextInt(intervals.size()));
+                tree.remove(removed);
+            }
+        }
+
+        assertEquals(intervals.size(), tree.size());
+
+        for (int i = 0; i < 5000; i++) {
+            LocalDateTime start = base.plusHours(random.nextInt(5100));
+            LocalDateTime end = start.plusHours(1 + random.nextInt(24));
+            boolean expected = intervals.stream()
+                    .anyMatch(it -> it.getStart().isBefore(end) && start.isBefore(it.getEnd()));
+
+            BookingInterval found = tree.findOverlap(start, end);
+
+            if (expected) {
+                assertNotNull(found);
+                assertEquals(true, found.getStart().isBefore(end) && start.isBefore(found.getEnd()));
+            } else {
+                assertNull(found);
+            }
+        }
+    }
+
+    @Test
+    void concurrentOverlappingBookingsLetOnlyOneThrough() throws Exception {
+        User owner = userRepository.save(user());
+        Item item = itemRepository.save(Item.builder().name("Дрель").description("Простая дрель")
+                .available(true).owner(owner).build());
+        List<User> bookers = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            bookers.add(userRepository.save(user()));
+        }
+
+        LocalDateTime start = LocalDateTime.now().plusDays(1).truncatedTo(ChronoUnit.SECONDS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            final BookingRequestDto request = new BookingRequestDto();
+            request.setItemId(item.getId());
+            // Все брони пересекаются друг с другом хотя бы на час
+            request.setStart(start.plusMinutes(i * 10L));
+            request.setEnd(start.plusHours(2));
+            final long bookerId = bookers.get(i).getId();
+
+            results.add(executor.submit(() -> {
+                ready.await();
+                try {
+                    bookingService.createBooking(request, bookerId);
+                    return true;
+                } catch (ConflictException e) {
+                    return false;
+                }
+            }));
+        }
+
+        ready.countDown();
+        int created = 0;
+        for (Future<Boolean> result : results) {
+            created += result.get(30, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        executor.shutdown();
+
+        assertEquals(1, created);
+
+        // Непересекающаяся бронь той же вещи проходит
+        BookingRequestDto later = new BookingRequestDto();
+        later.setItemId(item.getId());
+        later.setStart(start.plusHours(2));
+        later.setEnd(start.plusHours(3));
+        bookingService.createBooking(later, bookers.get(0).getId());
+
+        BookingRequestDto overlapping = new BookingRequestDto();
+        overlapping.setItemId(item.getId());
+        overlapping.setStart(start.plusHours(2).plusMinutes(30));
+        overlapping.setEnd(start.plusHours(4));
+        assertThrows(ConflictException.class,
+                () -> bookingService.createBooking(overlapping, bookers.get(1).getId()));
+    }
+
+    // Брони, записанные в обход этого индекса, как их записал бы другой экземпляр приложения,
+    // видят и одиночная проверка, и пакет решений
+    @Test
+    void bookingsWrittenByAnotherInstanceAreChecked() {
+        User owner = userRepository.save(user());
+        User booker = userRepository.save(user());
+        Item item = itemRepository.save(Item.builder().name("Дрель").description("Простая дрель")
+                .available(true).owner(owner).build());
+        LocalDateTime start = LocalDateTime.now().plusDays(1).truncatedTo(ChronoUnit.SECONDS);
+
+        Booking other = bookingRepository.save(Booking.builder().item(item).booker(booker).status(Status.APPROVED)
+                .start(start).end(start.plusHours(1)).build());
+        assertThrows(ConflictException.class, () -> bookingService.createBooking(
+                request(item, start.plusMinutes(30), start.plusHours(2)), booker.getId()));
+
+        // Другой экземпляр отклонил бронь: время снова свободно
+        other.setStatus(Status.REJECTED);
+        bookingRepository.save(other);
+        bookingService.createBooking(request(item, start.plusMinutes(30), start.plusHours(2)), booker.getId());
+
+        // Первый пакет проходит, затем другой экземпляр занимает время отклоненной брони
+        BookingResponseDto first = bookingService.createBooking(request(item, start.plusHours(3),
+                start.plusHours(4)), booker.getId());
+        BookingResponseDto second = bookingService.createBooking(request(item, start.plusHours(5),
+                start.plusHours(6)), booker.getId());
+        bookingService.approveBooking(first.getId(), owner.getId(), false);
+        bookingService.approveBooking(second.getId(), owner.getId(), false);
+        assertEquals(Status.APPROVED, approveInBatch(first.getId(), owner).getStatus());
+
+        bookingRepository.save(Booking.builder().item(item).booker(booker).status(Status.APPROVED)
+                .start(start.plusHours(5)).end(start.plusHours(6)).build());
+        BookingDecisionResultDto result = approveInBatch(second.getId(), owner);
+        assertNull(result.getStatus());
+        assertTrue(result.getError().startsWith("Вещь уже забронирована на это время"));
+    }
+
+    // Две отклоненные пересекающиеся брони в одном пакете: одобряется только первая
+    @Test
+    void batchChecksItsOwnApprovals() {
+        User owner = userRepository.save(user());
+        User booker = userRepository.save(user());
+        Item item = itemRepository.save(Item.builder().name("Дрель").description("Простая дрель")
+                .available(true).owner(owner).build());
+        LocalDateTime start = LocalDateTime.now().plusDays(1).truncatedTo(ChronoUnit.SECONDS);
+
+        List<BookingDecisionDto> decisions = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            BookingResponseDto booking = bookingService.createBooking(request(item, start.plusMinutes(30L * i),
+                    start.plusHours(1).plusMinutes(30L * i)), booker.getId());
+            bookingService.approveBooking(booking.getId(), owner.getId(), false);
+            BookingDecisionDto decision = new BookingDecisionDto();
+            decision.setBookingId(booking.getId());
+            decision.setApproved(true);
+            decisions.add(decision);
+        }
+
+        List<BookingDecisionResultDto> results = bookingService.approveBookings(owner.getId(), decisions);
+        assertEquals(Status.APPROVED, results.get(0).getStatus());
+        assertNull(results.get(1).getStatus());
+        assertEquals("Вещь уже забронирована на это время, бронь id = " + results.get(0).getBookingId(),
+                results.get(1).getError());
+    }
+
+    // Строка вещи в ITEMS упорядочивает брони и между экземплярами, у которых свои полосы блокировок
+    @Test
+    void itemRowLockOrdersBookingsAcrossInstances() throws Exception {
+        User owner = userRepository.save(user());
+        User booker = userRepository.save(user());
+        Item item = itemRepository.save(Item.builder().name("Дрель").description("Простая дрель")
+                .available(true).owner(owner).build());
+        LocalDateTime start = LocalDateTime.now().plusDays(1).truncatedTo(ChronoUnit.SECONDS);
+        BookingOverlapIndex otherInstance = new BookingOverlapIndex(bookingRepository, itemRepository);
+
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<?> holder = executor.submit(() -> transactionTemplate.execute(status -> {
+                otherInstance.lock(item.getId());
+                locked.countDown();
+                awaitQuietly(release);
+                return null;
+            }));
+            assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+            Future<BookingResponseDto> booking = executor.submit(() -> bookingService.createBooking(
+                    request(item, start, start.plusHours(1)), booker.getId()));
+            assertThrows(TimeoutException.class, () -> booking.get(300, TimeUnit.MILLISECONDS));
+
+            release.countDown();
+            holder.get(5, TimeUnit.SECONDS);
+            assertNotNull(booking.get(5, TimeUnit.SECONDS).getId());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private BookingDecisionResultDto approveInBatch(long bookingId, User owner) {
+        BookingDecisionDto decision = new BookingDecisionDto();
+        decision.setBookingId(bookingId);
+        decision.setApproved(true);
+        return bookingService.approveBookings(owner.getId(), List.of(decision)).get(0);
+    }
+
+    private static BookingRequestDto request(Item item, LocalDateTime start, LocalDateTime end) {
+        BookingRequestDto request = new BookingRequestDto();
+        request.setItemId(item.getId());
+        request.setStart(start);
+        request.setEnd(end);
+        return request;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static User user() {
+        String name = "user" + UUID.randomUUID();
+        return User.builder().name(name.substring(0, 20)).email(name + "@shareit.ru").build();
+    }
+}
@@ -0,0 +1,128 @@
+package ru.practicum.shareit.booking.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.practicum.shareit.booking.dto.BookingRequestDto;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.exception.BadRequestException;
+import ru.practicum.shareit.exception.ConflictException;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Много потоков одновременно одобряют и отклоняют одну бронь: ни одно изменение не должно потеряться
+@SpringBootTest
+class BookingApprovalConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int CALLS_PER_THREAD = 20;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Test
+    void concurrentDecisionsOnOneBooking() throws Exception {
+        User owner = userRepository.save(user("owner"));
+        User booker = userRepository.save(user("booker"));
+        User other = userRepository.save(user("other"));
+        Item item = itemRepository.save(Item.builder().name("Дрель").description("Простая дрель")
+                .available(true).owner(owner).build());
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        LocalDateTime end = start.plusDays(1);
+        Booking booking = bookingRepository.save(Booking.builder().item(item).booker(booker).status(Status.WAITING)
+                .start(start).end(end).build());
+
+        AtomicInteger approvals = new AtomicInteger();
+        AtomicInteger rejections = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch ready = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+
+            futures.add(executor.submit(() -> {
+                ready.await();
+
+                for (int call = 0; call < CALLS_PER_THREAD; call++) {
+                    // В основном отклонения, и ближе к концу несколько потоков разом пытаются одобрить
+                    boolean approve = call == CALLS_PER_THREAD / 2 && thread % 4 == 0;
+
+                    try {
+                        bookingService.approveBooking(booking.getId(), owner.getId(), approve);
+                        (approve ? approvals : rejections).incrementAndGet();
+                    } catch (BadRequestException e) {
+                        // бронь уже одобрена
+                    } catch (ConflictException e) {
+                        conflicts.incrementAndGet();
+                    } catch (Throwable e) {
+                        unexpected.add(e);
+                    }
+                }
+
+                return null;
+            }));
+        }
+
+        ready.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertTrue(unexpected.isEmpty(), () -> "Неожиданные ошибки: " + unexpected);
+        assertTrue(approvals.get() <= 1, "Одобрить бронь можно только один раз");
+
+        // Каждое успешное решение увеличивает версию ровно на единицу, значит потерянных обновлений не было
+        Booking stored = bookingRepository.findById(booking.getId()).orElseThrow();
+        assertEquals(approvals.get() + rejections.get(), stored.getVersion(),
+                "Конфликтов с повтором: " + conflicts.get());
+        assertEquals(approvals.get() == 1 ? Status.APPROVED : Status.REJECTED, stored.getStatus());
+
+        // Индекс пересечений согласован с итоговым статусом: одобренная бронь занимает время, отклоненная нет
+        BookingRequestDto overlapping = new BookingRequestDto();
+        overlapping.setItemId(item.getId());
+        overlapping.setStart(start.plusHours(1));
+        overlapping.setEnd(end.plusHours(1));
+
+        if (stored.getStatus() == Status.APPROVED) {
+            assertThrows(ConflictException.class, () -> bookingService.createBooking(overlapping, other.getId()));
+        } else {
+            bookingService.createBooking(overlapping, other.getId());
+        }
+    }
+
+    private static User user(String name) {
+        return User.builder().name(name).email(name + UUID.randomUUID() + "@shareit.ru").build();
+    }
+}
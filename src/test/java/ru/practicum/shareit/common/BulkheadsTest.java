@@ -0,0 +1,94 @@
+package ru.practicum.shareit.common;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.config.BulkheadProperties;
+import ru.practicum.shareit.exception.ServiceOverloadedException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkheadsTest {
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private Bulkheads bulkheads;
+
+    @BeforeEach
+    void setUp() {
+        BulkheadProperties properties = new BulkheadProperties();
+
+        for (BulkheadGroup group : BulkheadGroup.values()) {
+            BulkheadProperties.Group settings = new BulkheadProperties.Group();
+            settings.setThreads(2);
+            settings.setQueueCapacity(1);
+            settings.setConnections(1);
+            settings.setPermitTimeout(Duration.ofMillis(50));
+            properties.getGroups().put(group, settings);
+        }
+
+        bulkheads = new Bulkheads(properties, registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        bulkheads.shutdown();
+    }
+
+    @Test
+    void busyGroupFailsFastWithoutTouchingOtherGroups() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> slow = bulkheads.supply(BulkheadGroup.SEARCH, () -> {
+            started.countDown();
+            await(release);
+            return "slow";
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Второй поток группы есть, но единственное соединение занято: запрос отбивается по таймауту разрешения
+        CompletableFuture<String> noConnection = bulkheads.supply(BulkheadGroup.SEARCH, () -> "fast");
+        CompletionException failure = assertThrows(CompletionException.class, noConnection::join);
+        assertInstanceOf(ServiceOverloadedException.class, failure.getCause());
+
+        // Соседняя группа работает как обычно
+        assertEquals("booking", bulkheads.supply(BulkheadGroup.BOOKING_WRITES, () -> "booking")
+                .get(5, TimeUnit.SECONDS));
+
+        release.countDown();
+        assertEquals("slow", slow.get(5, TimeUnit.SECONDS));
+        assertEquals(1, registry.get("bulkhead.rejections").tags("group", "search", "reason", "connections")
+                .counter().count());
+    }
+
+    @Test
+    void fullQueueIsRejectedImmediately() {
+        // Оба потока и место в очереди заняты
+        for (int i = 0; i < 3; i++) {
+            bulkheads.supply(BulkheadGroup.USER_ADMIN, () -> await(release));
+        }
+
+        assertThrows(ServiceOverloadedException.class, () -> bulkheads.supply(BulkheadGroup.USER_ADMIN, () -> "late"));
+        assertEquals(1, registry.get("bulkhead.rejections").tags("group", "user-admin", "reason", "queue")
+                .counter().count());
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
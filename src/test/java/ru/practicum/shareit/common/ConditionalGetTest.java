@@ -0,0 +1,145 @@
+package ru.practicum.shareit.common;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.service.ItemSummaryReconciler;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// ETag меняется вместе со всем, что входит в ответ, а совпавший If-None-Match дает 304 без тела
+@SpringBootTest
+@AutoConfigureMockMvc
+class ConditionalGetTest {
+    private static final String USER_ID_HEADER = "X-Sharer-User-Id";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private ItemSummaryReconciler reconciler;
+
+    private User owner;
+    private User booker;
+    private Item item;
+    private Booking past;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(user("owner"));
+        booker = userRepository.save(user("booker"));
+        item = itemRepository.save(Item.builder().name("Дрель").description("Простая дрель")
+                .available(true).owner(owner).build());
+        // Версии броней и комментариев для ETag вещи ведет ее сводка, а вещь сохранена в обход сервиса
+        reconciler.backfill();
+        past = bookingRepository.save(Booking.builder().item(item).booker(booker).status(Status.APPROVED)
+                .start(LocalDateTime.now().minusDays(2)).end(LocalDateTime.now().minusDays(1)).build());
+    }
+
+    @Test
+    void itemETagChangesWithBookingsAndComments() throws Exception {
+        String etag = etag(get("/items/{id}", item.getId()).header(USER_ID_HEADER, owner.getId()));
+
+        notModified(get("/items/{id}", item.getId()).header(USER_ID_HEADER, owner.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, etag));
+
+        // Новая бронь меняет ближайшие брони в ответе владельцу
+        String body = String.format("{\"itemId\": %d, \"start\": \"%s\", \"end\": \"%s\"}", item.getId(),
+                LocalDateTime.now().plusDays(1), LocalDateTime.now().plusDays(2));
+        perform(post("/bookings").header(USER_ID_HEADER, booker.getId())
+                .contentType(MediaType.APPLICATION_JSON).content(body)).andExpect(status().isOk());
+
+        String afterBooking = etag(get("/items/{id}", item.getId()).header(USER_ID_HEADER, owner.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, etag));
+        assertNotEquals(etag, afterBooking);
+
+        perform(post("/items/{id}/comment", item.getId()).header(USER_ID_HEADER, booker.getId())
+                .contentType(MediaType.APPLICATION_JSON).content("{\"text\": \"Отличная дрель\"}"))
+                .andExpect(status().isOk());
+        String afterComment = etag(get("/items/{id}", item.getId()).header(USER_ID_HEADER, owner.getId()));
+        assertNotEquals(afterBooking, afterComment);
+
+        // Переименование автора меняет текст ответа, а с ним и ETag
+        perform(patch("/users/{id}", booker.getId()).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\": \"renamed\"}")).andExpect(status().isOk());
+        assertNotEquals(afterComment, etag(get("/items/{id}", item.getId()).header(USER_ID_HEADER, owner.getId())));
+    }
+
+    @Test
+    void ownerAndOtherUsersGetDifferentItemETags() throws Exception {
+        assertNotEquals(etag(get("/items/{id}", item.getId()).header(USER_ID_HEADER, owner.getId())),
+                etag(get("/items/{id}", item.getId()).header(USER_ID_HEADER, booker.getId())));
+    }
+
+    @Test
+    void userAndBookingETags() throws Exception {
+        String userETag = etag(get("/users/{id}", booker.getId()));
+        String bookingETag = etag(get("/bookings/{id}", past.getId()).header(USER_ID_HEADER, booker.getId()));
+
+        notModified(get("/users/{id}", booker.getId()).header(HttpHeaders.IF_NONE_MATCH, "W/" + userETag));
+        notModified(get("/bookings/{id}", past.getId()).header(USER_ID_HEADER, booker.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"other\", " + bookingETag));
+
+        perform(patch("/users/{id}", booker.getId()).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\": \"" + UUID.randomUUID() + "@shareit.ru\"}")).andExpect(status().isOk());
+
+        assertNotEquals(userETag, etag(get("/users/{id}", booker.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, userETag)));
+        assertNotEquals(bookingETag, etag(get("/bookings/{id}", past.getId())
+                .header(USER_ID_HEADER, booker.getId()).header(HttpHeaders.IF_NONE_MATCH, bookingETag)));
+    }
+
+    private String etag(RequestBuilder request) throws Exception {
+        return perform(request).andExpect(status().isOk()).andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private void notModified(RequestBuilder request) throws Exception {
+        perform(request).andExpect(status().isNotModified()).andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(content().string(""));
+    }
+
+    private ResultActions perform(RequestBuilder request) throws Exception {
+        MvcResult result = mvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+        return mvc.perform(asyncDispatch(result));
+    }
+
+    private static User user(String name) {
+        return User.builder().name(name).email(name + UUID.randomUUID() + "@shareit.ru").build();
+    }
+}
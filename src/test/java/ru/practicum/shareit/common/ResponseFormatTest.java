@@ -0,0 +1,154 @@
+package ru.practicum.shareit.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Списки в JSON по умолчанию, в NDJSON и Smile по Accept, и нормализованный список бронирований
+@SpringBootTest
+@AutoConfigureMockMvc
+class ResponseFormatTest {
+    private static final String USER_ID_HEADER = "X-Sharer-User-Id";
+    private static final String SMILE = "application/x-jackson-smile";
+    private static final int BOOKINGS = 6;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    private User owner;
+    private User booker;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(user("owner"));
+        booker = userRepository.save(user("booker"));
+        Item drill = itemRepository.save(Item.builder().name("Дрель").description("Простая дрель")
+                .available(true).owner(owner).build());
+        Item saw = itemRepository.save(Item.builder().name("Пила").description("Ручная пила")
+                .available(true).owner(owner).build());
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int i = 0; i < BOOKINGS; i++) {
+            bookingRepository.save(Booking.builder().item(i % 2 == 0 ? drill : saw).booker(booker)
+                    .status(Status.APPROVED).start(now.plusDays(i + 1)).end(now.plusDays(i + 2)).build());
+        }
+    }
+
+    @Test
+    void jsonStaysDefault() throws Exception {
+        MvcResult result = perform(get("/bookings").header(USER_ID_HEADER, booker.getId())
+                .header(HttpHeaders.ACCEPT, MediaType.ALL_VALUE));
+
+        assertTrue(MediaType.APPLICATION_JSON.isCompatibleWith(contentType(result)));
+        assertEquals(BOOKINGS, objectMapper.readTree(result.getResponse().getContentAsByteArray()).size());
+    }
+
+    @Test
+    void ndjsonHasOneBookingPerLine() throws Exception {
+        JsonNode json = json(get("/bookings").header(USER_ID_HEADER, booker.getId()));
+        MvcResult result = perform(get("/bookings").header(USER_ID_HEADER, booker.getId())
+                .header(HttpHeaders.ACCEPT, NdjsonHttpMessageConverter.NDJSON_VALUE));
+
+        assertTrue(NdjsonHttpMessageConverter.NDJSON.isCompatibleWith(contentType(result)));
+        String[] lines = result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(BOOKINGS, lines.length);
+
+        for (int i = 0; i < BOOKINGS; i++) {
+            assertEquals(json.get(i), objectMapper.readTree(lines[i]));
+        }
+    }
+
+    @Test
+    void smileDecodesToSameJson() throws Exception {
+        JsonNode json = json(get("/bookings/owner").header(USER_ID_HEADER, owner.getId()));
+        MvcResult result = perform(get("/bookings/owner").header(USER_ID_HEADER, owner.getId())
+                .header(HttpHeaders.ACCEPT, SMILE));
+
+        assertTrue(MediaType.parseMediaType(SMILE).isCompatibleWith(contentType(result)));
+        byte[] smile = result.getResponse().getContentAsByteArray();
+        assertEquals(json, new ObjectMapper(new SmileFactory()).readTree(smile));
+        assertTrue(smile.length < objectMapper.writeValueAsBytes(json).length);
+    }
+
+    @Test
+    void normalizedListHasEachUserAndItemOnce() throws Exception {
+        JsonNode normalized = json(get("/bookings").param("shape", "normalized")
+                .header(USER_ID_HEADER, booker.getId()));
+
+        assertEquals(BOOKINGS, normalized.get("bookings").size());
+        assertEquals(1, normalized.get("users").size());
+        assertEquals(2, normalized.get("items").size());
+        assertEquals(booker.getId().longValue(), normalized.get("bookings").get(0).get("bookerId").asLong());
+    }
+
+    @Test
+    void exportStreamsNdjson() throws Exception {
+        MvcResult result = perform(get("/items/export").header(USER_ID_HEADER, owner.getId())
+                .header(HttpHeaders.ACCEPT, NdjsonHttpMessageConverter.NDJSON_VALUE));
+
+        assertTrue(NdjsonHttpMessageConverter.NDJSON.isCompatibleWith(contentType(result)));
+        assertEquals(2, result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n").length);
+    }
+
+    private JsonNode json(RequestBuilder request) throws Exception {
+        return objectMapper.readTree(perform(request).getResponse().getContentAsByteArray());
+    }
+
+    private MvcResult perform(RequestBuilder request) throws Exception {
+        MvcResult result = mvc.perform(request).andReturn();
+
+        if (result.getRequest().isAsyncStarted()) {
+            result.getAsyncResult();
+            result = mvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andReturn();
+        }
+
+        return result;
+    }
+
+    private static MediaType contentType(MvcResult result) {
+        return MediaType.parseMediaType(result.getResponse().getContentType());
+    }
+
+    private static User user(String name) {
+        return User.builder().name(name).email(name + UUID.randomUUID() + "@shareit.ru").build();
+    }
+}
@@ -0,0 +1,141 @@
+package ru.practicum.shareit.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Две базы H2 вместо основной и реплики. Репликации между ними нет, поэтому по содержимому видно, куда ушел запрос
+@SpringBootTest
+@AutoConfigureMockMvc
+class ReadReplicaRoutingTest {
+    private static final String USER_ID_HEADER = "X-Sharer-User-Id";
+    private static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    private User writer;
+    private User reader;
+
+    @DynamicPropertySource
+    static void replica(DynamicPropertyRegistry registry) throws Exception {
+        // Схема реплики нужна до старта контекста: поисковый индекс читает вещи уже при запуске
+        try (Connection connection = new DriverManagerDataSource(REPLICA_URL, "sa", "").getConnection()) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema.sql"));
+        }
+
+        registry.add("spring.datasource.url", () -> "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1");
+        registry.add("shareit.datasource.replicas[0].jdbc-url", () -> REPLICA_URL);
+        registry.add("shareit.datasource.replicas[0].username", () -> "sa");
+        registry.add("shareit.datasource.read-your-writes-window", () -> "1h");
+    }
+
+    @BeforeEach
+    void setUp() {
+        // Пользователи есть в обеих базах, как после репликации
+        writer = copyToReplica(userRepository.save(user("writer")));
+        reader = copyToReplica(userRepository.save(user("reader")));
+    }
+
+    @Test
+    void readOnlyTransactionsUseReplica() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+
+        assertEquals("ROUTING-PRIMARY", transaction.execute(status -> databaseName(jdbc)));
+
+        transaction.setReadOnly(true);
+        assertEquals("ROUTING-REPLICA", transaction.execute(status -> databaseName(jdbc)));
+    }
+
+    @Test
+    void writerReadsOwnWritesFromPrimary() throws Exception {
+        String item = perform(post("/items").header(USER_ID_HEADER, writer.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\": \"Дрель\", \"description\": \"Простая дрель\", \"available\": true}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        long itemId = Long.parseLong(item.replaceAll(".*\"id\":(\\d+).*", "$1"));
+
+        // Автор записи в окне read-your-writes читает из основной базы и видит свою вещь
+        perform(get("/items").header(USER_ID_HEADER, writer.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+
+        // Остальные читают реплику, куда вещь еще не попала
+        perform(get("/items/{id}", itemId).header(USER_ID_HEADER, reader.getId()))
+                .andExpect(status().isNotFound());
+
+        replica.update("INSERT INTO ITEMS (ID, NAME, DESCRIPTION, AVAILABLE, OWNER) VALUES (?, ?, ?, ?, ?)",
+                itemId, "Дрель с реплики", "Простая дрель", true, writer.getId());
+        // Кэш второго уровня общий для обеих баз и уже знает вещь после записи, поэтому здесь его сбрасываем
+        entityManagerFactory.getCache().evictAll();
+
+        perform(get("/items/{id}", itemId).header(USER_ID_HEADER, reader.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Дрель с реплики"));
+    }
+
+    private User copyToReplica(User user) {
+        replica.update("INSERT INTO USERS (ID, NAME, EMAIL) VALUES (?, ?, ?)",
+                user.getId(), user.getName(), user.getEmail());
+        return user;
+    }
+
+    private static String databaseName(JdbcTemplate jdbc) {
+        return jdbc.queryForObject("SELECT DATABASE()", String.class);
+    }
+
+    private ResultActions perform(RequestBuilder request) throws Exception {
+        MvcResult result = mvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+        return mvc.perform(asyncDispatch(result));
+    }
+
+    private static User user(String name) {
+        return User.builder().name(name).email(name + UUID.randomUUID() + "@shareit.ru").build();
+    }
+}
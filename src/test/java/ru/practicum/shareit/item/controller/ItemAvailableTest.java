@@ -0,0 +1,125 @@
+package ru.practicum.shareit.item.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Свободные в [from, to) вещи: время занимают только одобренные брони, пересекающиеся с периодом,
+// а брони, которые кончаются в from или начинаются в to, ему не мешают
+@SpringBootTest
+@AutoConfigureMockMvc
+class ItemAvailableTest {
+    private static final LocalDateTime FROM = LocalDateTime.of(2031, 3, 1, 10, 0);
+    private static final LocalDateTime TO = FROM.plusHours(2);
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    // Метка в описании отделяет вещи этого теста от вещей других тестов в общей базе
+    private String marker;
+    private User owner;
+    private User booker;
+
+    @BeforeEach
+    void setUp() {
+        marker = UUID.randomUUID().toString().substring(0, 8);
+        owner = userRepository.save(user("owner"));
+        booker = userRepository.save(user("booker"));
+    }
+
+    @Test
+    void onlyOverlappingApprovedBookingsTakeTheItem() throws Exception {
+        Item overlapped = item(true);
+        booking(overlapped, Status.APPROVED, FROM.plusHours(1), TO.plusHours(1));
+        Item covered = item(true);
+        booking(covered, Status.APPROVED, FROM.plusMinutes(30), FROM.plusHours(1));
+        Item waiting = item(true);
+        booking(waiting, Status.WAITING, FROM, TO);
+        Item rejected = item(true);
+        booking(rejected, Status.REJECTED, FROM, TO);
+        Item endsAtFrom = item(true);
+        booking(endsAtFrom, Status.APPROVED, FROM.minusHours(1), FROM);
+        Item startsAtTo = item(true);
+        booking(startsAtTo, Status.APPROVED, TO, TO.plusHours(1));
+        item(false);
+
+        assertEquals(List.of(waiting.getId(), rejected.getId(), endsAtFrom.getId(), startsAtTo.getId()),
+                availableIds(FROM, TO));
+
+        // Тот же период, сдвинутый на минуту назад, задевает бронь, кончающуюся в from
+        assertEquals(List.of(waiting.getId(), rejected.getId(), startsAtTo.getId()),
+                availableIds(FROM.minusMinutes(1), TO.minusMinutes(1)));
+    }
+
+    @Test
+    void emptyPeriodIsRejected() throws Exception {
+        mvc.perform(asyncDispatch(mvc.perform(request(TO, FROM)).andReturn()))
+                .andExpect(status().isBadRequest());
+    }
+
+    private List<Long> availableIds(LocalDateTime from, LocalDateTime to) throws Exception {
+        MvcResult result = mvc.perform(request(from, to)).andReturn();
+        result = mvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andReturn();
+
+        List<Long> ids = new ArrayList<>();
+        for (JsonNode item : objectMapper.readTree(result.getResponse().getContentAsByteArray())) {
+            ids.add(item.get("id").asLong());
+        }
+        return ids;
+    }
+
+    private MockHttpServletRequestBuilder request(LocalDateTime from, LocalDateTime to) {
+        return get("/items/available").param("text", marker)
+                .param("from", from.toString()).param("to", to.toString());
+    }
+
+    private Item item(boolean available) {
+        return itemRepository.save(Item.builder().name("Дрель").description("Простая дрель " + marker)
+                .available(available).owner(owner).build());
+    }
+
+    private void booking(Item item, Status status, LocalDateTime start, LocalDateTime end) {
+        bookingRepository.save(Booking.builder().item(item).booker(booker).status(status)
+                .start(start).end(end).build());
+    }
+
+    private static User user(String name) {
+        return User.builder().name(name).email(name + UUID.randomUUID() + "@shareit.ru").build();
+    }
+}
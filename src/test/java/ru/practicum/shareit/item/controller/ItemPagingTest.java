@@ -0,0 +1,85 @@
+package ru.practicum.shareit.item.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import ru.practicum.shareit.item.dto.item.ItemRequestDto;
+import ru.practicum.shareit.item.service.ItemService;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Без size вещи владельца и результаты поиска отдаются целиком, с size - одной страницей
+@SpringBootTest
+@AutoConfigureMockMvc
+class ItemPagingTest {
+    private static final String USER_ID_HEADER = "X-Sharer-User-Id";
+    private static final int ITEMS = 25;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // Через сервис, чтобы вещи попали и в поисковый индекс
+    @Autowired
+    private ItemService itemService;
+
+    // Метка в описании отделяет вещи этого теста от вещей других тестов в общей базе
+    private String marker;
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        marker = UUID.randomUUID().toString().substring(0, 8);
+        owner = userRepository.save(User.builder().name("owner").email("owner" + UUID.randomUUID() + "@shareit.ru")
+                .build());
+
+        for (int i = 0; i < ITEMS; i++) {
+            itemService.addItem(ItemRequestDto.builder().name("Дрель " + i).description("Простая дрель " + marker)
+                    .available(true).build(), owner.getId());
+        }
+    }
+
+    @Test
+    void withoutSizeWholeListIsReturned() throws Exception {
+        assertEquals(ITEMS, body(perform(get("/items").header(USER_ID_HEADER, owner.getId()))).size());
+        assertEquals(ITEMS, body(perform(get("/items/search").param("text", marker))).size());
+    }
+
+    @Test
+    void sizeLimitsPage() throws Exception {
+        assertEquals(10, body(perform(get("/items").param("size", "10")
+                .header(USER_ID_HEADER, owner.getId()))).size());
+        assertEquals(5, body(perform(get("/items").param("from", "20").param("size", "10")
+                .header(USER_ID_HEADER, owner.getId()))).size());
+        assertEquals(10, body(perform(get("/items/search").param("text", marker).param("size", "10"))).size());
+    }
+
+    private JsonNode body(MvcResult result) throws Exception {
+        return objectMapper.readTree(result.getResponse().getContentAsByteArray());
+    }
+
+    // Обработчики выполняются в пулах переборок, дожидаемся их результата
+    private MvcResult perform(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult result = mvc.perform(request).andReturn();
+        return mvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andReturn();
+    }
+}
@@ -0,0 +1,102 @@
+package ru.practicum.shareit.item.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.item.dto.item.ItemImportErrorDto;
+import ru.practicum.shareit.item.dto.item.ItemImportResultDto;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Массовая загрузка вещей: ошибки по номерам строк, порции по chunk-size и ограничение списка ошибок max-errors
+@SpringBootTest(properties = {"shareit.items.import.chunk-size=3", "shareit.items.import.max-errors=2"})
+class ItemImportTest {
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(User.builder().name("owner").email("owner" + UUID.randomUUID() + "@shareit.ru")
+                .build());
+    }
+
+    @Test
+    void badLinesAreReportedByLineNumber() {
+        ItemImportResultDto result = importItems(
+                item("Дрель"),
+                "{\"name\": \"Пила\", \"description\": ",
+                "",
+                "{\"name\": \" \", \"description\": \"Без названия\"}",
+                item("Лобзик"));
+
+        assertEquals(2, result.getImported());
+        assertEquals(2, result.getFailed());
+        assertEquals(List.of(2L, 4L), result.getErrors().stream().map(ItemImportErrorDto::getLine)
+                .collect(Collectors.toList()));
+        assertTrue(result.getErrors().get(0).getError().startsWith("Некорректный JSON"));
+        assertEquals("available: must not be null, name: must not be blank", result.getErrors().get(1).getError());
+        assertEquals(List.of("Дрель", "Лобзик"), ownerItemNames());
+    }
+
+    @Test
+    void everyChunkIsSaved() {
+        // Порции по три: полные, неполная последняя и ошибка посреди порции
+        for (int count : new int[]{3, 6, 7}) {
+            owner = userRepository.save(User.builder().name("owner").email(UUID.randomUUID() + "@shareit.ru").build());
+            List<String> names = IntStream.range(0, count).mapToObj(i -> "Дрель " + i).collect(Collectors.toList());
+            List<String> lines = names.stream().map(ItemImportTest::item).collect(Collectors.toList());
+            lines.add(count / 2, "не JSON");
+
+            ItemImportResultDto result = importItems(lines.toArray(new String[0]));
+
+            assertEquals(count, result.getImported());
+            assertEquals(1, result.getFailed());
+            assertEquals(names, ownerItemNames());
+        }
+    }
+
+    @Test
+    void onlyFirstErrorsAreListed() {
+        ItemImportResultDto result = importItems("[", item("Дрель"), "{}", "null", "{\"name\": 1}");
+
+        assertEquals(1, result.getImported());
+        assertEquals(4, result.getFailed());
+        assertEquals(List.of(1L, 3L), result.getErrors().stream().map(ItemImportErrorDto::getLine)
+                .collect(Collectors.toList()));
+    }
+
+    private ItemImportResultDto importItems(String... lines) {
+        return itemService.importItems(new BufferedReader(new StringReader(String.join("\n", lines))),
+                owner.getId());
+    }
+
+    // Id вещей из ITEMS_SEQ растут в порядке вставки
+    private List<String> ownerItemNames() {
+        return jdbcTemplate.queryForList("SELECT NAME FROM ITEMS WHERE OWNER = ? ORDER BY ID", String.class,
+                owner.getId());
+    }
+
+    private static String item(String name) {
+        return String.format("{\"name\": \"%s\", \"description\": \"Простая\", \"available\": true}", name);
+    }
+}
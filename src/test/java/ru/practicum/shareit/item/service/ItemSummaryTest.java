@@ -0,0 +1,172 @@
+package ru.practicum.shareit.item.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingRequestDto;
+import ru.practicum.shareit.booking.dto.BookingResponseDto;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.item.dto.item.ItemRequestDto;
+import ru.practicum.shareit.item.dto.item.ItemResponseDto;
+import ru.practicum.shareit.item.model.ItemSummary;
+import ru.practicum.shareit.item.repository.ItemSummaryRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Сводка вещи меняется вместе с бронями, а список вещей владельца совпадает с ответом, посчитанным по BOOKINGS
+@SpringBootTest
+class ItemSummaryTest {
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private ItemSummaryReconciler reconciler;
+
+    @Autowired
+    private ItemSummaryRepository summaryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User owner;
+    private User booker;
+    private long itemId;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(user("owner"));
+        booker = userRepository.save(user("booker"));
+
+        itemId = itemService.addItem(ItemRequestDto.builder().name("Дрель").description("Простая дрель")
+                .available(true).build(), owner.getId()).getId();
+    }
+
+    @Test
+    void bookingsMoveSummary() {
+        LocalDateTime now = LocalDateTime.now();
+        BookingResponseDto past = bookingService.createBooking(booking(now.minusDays(2), now.minusDays(1)),
+                booker.getId());
+        BookingResponseDto later = bookingService.createBooking(booking(now.plusDays(5), now.plusDays(6)),
+                booker.getId());
+        BookingResponseDto sooner = bookingService.createBooking(booking(now.plusDays(1), now.plusDays(2)),
+                booker.getId());
+
+        ItemSummary summary = summaryRepository.findById(itemId).orElseThrow();
+        assertEquals(past.getId(), summary.getLastBookingId());
+        assertEquals(sooner.getId(), summary.getNextBookingId());
+        assertEquals(summary.getNextStart(), summary.getRefreshAt());
+
+        ItemResponseDto item = itemService.getItems(owner.getId(), 0, 20).get(0);
+        assertEquals(past.getId(), item.getLastBooking().getId());
+        assertEquals(sooner.getId(), item.getNextBooking().getId());
+
+        // Отклоненная следующая бронь делает сводку устаревшей, но список уже не показывает эту бронь
+        bookingService.approveBooking(sooner.getId(), owner.getId(), false);
+        assertFalse(summaryRepository.findById(itemId).orElseThrow().isFreshAt(LocalDateTime.now()));
+        assertEquals(later.getId(), itemService.getItems(owner.getId(), 0, 20).get(0).getNextBooking().getId());
+
+        reconciler.reconcile();
+
+        summary = summaryRepository.findById(itemId).orElseThrow();
+        assertTrue(summary.isFreshAt(LocalDateTime.now()));
+        assertEquals(past.getId(), summary.getLastBookingId());
+        assertEquals(later.getId(), summary.getNextBookingId());
+    }
+
+    // Сводка устарела, а бронь еще не закоммичена: ее UPDATE сводку не меняет, но держит строку,
+    // и пересчет ждет коммита, чтобы увидеть эту бронь
+    @Test
+    void reconcileWaitsForUncommittedBooking() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        bookingService.createBooking(booking(now.plusDays(5), now.plusDays(6)), booker.getId());
+        BookingResponseDto sooner = bookingService.createBooking(booking(now.plusDays(1), now.plusDays(2)),
+                booker.getId());
+        bookingService.approveBooking(sooner.getId(), owner.getId(), false);
+
+        CountDownLatch created = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<Long> writer = executor.submit(() -> transactionTemplate.execute(status -> {
+                long id = bookingService.createBooking(booking(now.plusDays(3), now.plusDays(4)), booker.getId())
+                        .getId();
+                created.countDown();
+                awaitQuietly(commit);
+                return id;
+            }));
+            assertTrue(created.await(5, TimeUnit.SECONDS));
+
+            Future<?> reconcile = executor.submit(reconciler::reconcile);
+            assertThrows(TimeoutException.class, () -> reconcile.get(300, TimeUnit.MILLISECONDS));
+
+            commit.countDown();
+            long bookingId = writer.get(5, TimeUnit.SECONDS);
+            reconcile.get(5, TimeUnit.SECONDS);
+
+            ItemSummary summary = summaryRepository.findById(itemId).orElseThrow();
+            assertTrue(summary.isFreshAt(LocalDateTime.now()));
+            assertEquals(bookingId, summary.getNextBookingId());
+            assertEquals(bookingId, itemService.getItems(owner.getId(), 0, 20).get(0).getNextBooking().getId());
+        } finally {
+            commit.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void itemWithoutBookingsHasEmptySummary() {
+        ItemSummary summary = summaryRepository.findById(itemId).orElseThrow();
+        assertNull(summary.getLastBookingId());
+        assertNull(summary.getNextBookingId());
+        assertEquals(0L, summary.getCommentCount());
+
+        ItemResponseDto item = itemService.getItems(owner.getId(), 0, 20).get(0);
+        assertNull(item.getLastBooking());
+        assertNull(item.getNextBooking());
+        assertNull(item.getComments());
+    }
+
+    private BookingRequestDto booking(LocalDateTime start, LocalDateTime end) {
+        BookingRequestDto bookingDto = new BookingRequestDto();
+        bookingDto.setItemId(itemId);
+        bookingDto.setStart(start);
+        bookingDto.setEnd(end);
+        return bookingDto;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static User user(String name) {
+        return User.builder().name(name).email(name + UUID.randomUUID() + "@shareit.ru").build();
+    }
+}
@@ -0,0 +1,55 @@
+package ru.practicum.shareit.user.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Без size список пользователей отдается целиком, с size - одной страницей
+@SpringBootTest
+@AutoConfigureMockMvc
+class UserPagingTest {
+    private static final int USERS = 25;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void withoutSizeWholeListIsReturned() throws Exception {
+        for (int i = 0; i < USERS; i++) {
+            userRepository.save(User.builder().name("user").email("user" + UUID.randomUUID() + "@shareit.ru").build());
+        }
+
+        assertEquals(userRepository.count(), size(perform(get("/users"))));
+        assertEquals(10, size(perform(get("/users").param("size", "10"))));
+    }
+
+    private int size(MvcResult result) throws Exception {
+        return objectMapper.readTree(result.getResponse().getContentAsByteArray()).size();
+    }
+
+    // Обработчики выполняются в пулах переборок, дожидаемся их результата
+    private MvcResult perform(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult result = mvc.perform(request).andReturn();
+        return mvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andReturn();
+    }
+}